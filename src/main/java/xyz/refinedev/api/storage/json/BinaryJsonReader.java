@@ -0,0 +1,409 @@
+package xyz.refinedev.api.storage.json;
+
+import com.google.gson.JsonObject;
+import com.google.gson.internal.JsonReaderInternalAccess;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * A {@link JsonReader} over the body of a {@link JsonSnapshot}, so Gson decodes
+ * the snapshot without building a tree or tokenizing text first.
+ * <p>
+ * Like the BSON reader of the mongo codecs, it mirrors the private state of {@link JsonReader}
+ * for names so Gson's map adapter can read keys. {@link #isSupported()} tells whether
+ * that works with the Gson on the classpath.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+final class BinaryJsonReader extends JsonReader {
+
+    private static final Reader UNREADABLE_READER = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    /**
+     * Values of JsonReader's private peeked state, these have not changed since Gson 2.2
+     */
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_DOUBLE_QUOTED = 9;
+    private static final int PEEKED_DOUBLE_QUOTED_NAME = 13;
+
+    private static final Field PEEKED_FIELD;
+    private static final boolean SUPPORTED;
+
+    static {
+        Field field;
+        try {
+            field = JsonReader.class.getDeclaredField("peeked");
+            field.setAccessible(true);
+        } catch (Exception e) {
+            field = null;
+        }
+        PEEKED_FIELD = field;
+        SUPPORTED = field != null && probe();
+    }
+
+    private final ByteBuffer buffer;
+    /**
+     * Member names in the order they first appear, later ones refer to them by index
+     */
+    private final List<String> names = new ArrayList<>();
+    /**
+     * One entry per open container, true if that container is an array
+     */
+    private final Deque<Boolean> containers = new ArrayDeque<>();
+    private JsonToken peeked;
+    /**
+     * Tag of the value about to be read
+     */
+    private byte tag;
+    private String name;
+    private boolean started;
+    private boolean promotedName;
+
+    BinaryJsonReader(ByteBuffer buffer) {
+        super(UNREADABLE_READER);
+        this.buffer = buffer;
+    }
+
+    /**
+     * Whether this reader can be used with the Gson version on the classpath
+     *
+     * @return {@link Boolean supported}
+     */
+    static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (this.peeked == JsonToken.NAME && this.isPromoted()) {
+            this.peeked = JsonToken.STRING;
+            this.promotedName = true;
+        }
+        if (this.peeked != null) {
+            return this.peeked;
+        }
+
+        if (this.containers.isEmpty()) {
+            if (this.started) {
+                if (this.buffer.hasRemaining()) {
+                    throw new IllegalStateException("[Storage] Snapshot has data after its end!");
+                }
+                this.peeked = JsonToken.END_DOCUMENT;
+            } else {
+                this.started = true;
+                this.peeked = this.readTag();
+            }
+        } else if (this.containers.peek()) {
+            this.tag = this.buffer.get();
+            this.peeked = this.tag == JsonSnapshot.END_ARRAY ? JsonToken.END_ARRAY : this.tokenOf(this.tag);
+        } else {
+            int reference = (int) JsonSnapshot.readVarLong(this.buffer);
+            if (reference == JsonSnapshot.END_OBJECT) {
+                this.peeked = JsonToken.END_OBJECT;
+            } else {
+                if (reference == JsonSnapshot.NEW_NAME) {
+                    this.name = JsonSnapshot.readString(this.buffer);
+                    this.names.add(this.name);
+                } else {
+                    this.name = this.names.get(reference - 2);
+                }
+                this.peeked = JsonToken.NAME;
+                this.setBasePeeked(PEEKED_DOUBLE_QUOTED_NAME);
+            }
+        }
+        return this.peeked;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        this.expect(JsonToken.BEGIN_ARRAY);
+        this.containers.push(true);
+        this.peeked = null;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        this.expect(JsonToken.END_ARRAY);
+        this.containers.pop();
+        this.peeked = null;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        this.expect(JsonToken.BEGIN_OBJECT);
+        this.containers.push(false);
+        this.peeked = null;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        this.expect(JsonToken.END_OBJECT);
+        this.containers.pop();
+        this.peeked = null;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        JsonToken token = this.peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        this.expect(JsonToken.NAME);
+        return this.readName();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        JsonToken token = this.peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a string but was " + token);
+        }
+        if (this.promotedName) {
+            return this.readName();
+        }
+
+        String value = this.tag == JsonSnapshot.INTEGER ? Long.toString(this.readInteger()) : JsonSnapshot.readString(this.buffer);
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        this.expect(JsonToken.BOOLEAN);
+        this.peeked = null;
+        return this.tag == JsonSnapshot.TRUE;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        this.expect(JsonToken.NULL);
+        this.peeked = null;
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        JsonToken token = this.peek();
+        double value;
+        if (token == JsonToken.NUMBER && this.tag == JsonSnapshot.INTEGER) {
+            value = this.readInteger();
+        } else if (token == JsonToken.NUMBER || token == JsonToken.STRING && !this.promotedName) {
+            value = Double.parseDouble(JsonSnapshot.readString(this.buffer));
+        } else if (this.promotedName) {
+            value = Double.parseDouble(this.readName());
+        } else {
+            throw new IllegalStateException("Expected a double but was " + token);
+        }
+
+        if (!this.isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new NumberFormatException("JSON forbids NaN and infinities: " + value);
+        }
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        JsonToken token = this.peek();
+        long value;
+        if (token == JsonToken.NUMBER && this.tag == JsonSnapshot.INTEGER) {
+            value = this.readInteger();
+        } else if (token == JsonToken.NUMBER || token == JsonToken.STRING && !this.promotedName) {
+            value = parseLong(JsonSnapshot.readString(this.buffer));
+        } else if (this.promotedName) {
+            value = parseLong(this.readName());
+        } else {
+            throw new IllegalStateException("Expected a long but was " + token);
+        }
+
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long value = this.nextLong();
+        if ((int) value != value) {
+            throw new NumberFormatException("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            JsonToken token = this.peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    this.beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    this.beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    if (depth == 0) {
+                        throw new IllegalStateException("Expected a value but was " + token);
+                    }
+                    if (token == JsonToken.END_ARRAY) {
+                        this.endArray();
+                    } else {
+                        this.endObject();
+                    }
+                    depth--;
+                    break;
+                case END_DOCUMENT:
+                    throw new IllegalStateException("Expected a value but was " + token);
+                case NAME:
+                    this.nextName();
+                    break;
+                case STRING:
+                case NUMBER:
+                    this.nextString();
+                    break;
+                default:
+                    // Booleans and nulls have nothing after their tag
+                    this.peeked = null;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() {
+        // The buffer belongs to the snapshot
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName();
+    }
+
+    private String readName() {
+        String name = this.name;
+        this.name = null;
+        this.promotedName = false;
+        this.setBasePeeked(PEEKED_NONE);
+        this.peeked = this.readTag();
+        return name;
+    }
+
+    private JsonToken readTag() {
+        this.tag = this.buffer.get();
+        return this.tokenOf(this.tag);
+    }
+
+    private long readInteger() {
+        long zigzag = JsonSnapshot.readVarLong(this.buffer);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private boolean isPromoted() {
+        try {
+            return PEEKED_FIELD != null && PEEKED_FIELD.getInt(this) == PEEKED_DOUBLE_QUOTED;
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    private void setBasePeeked(int value) {
+        if (PEEKED_FIELD == null) return;
+
+        try {
+            PEEKED_FIELD.setInt(this, value);
+        } catch (IllegalAccessException ignored) {
+            // Only map keys depend on it, checked by the probe
+        }
+    }
+
+    /**
+     * Read {"key": 1} the way Gson's map adapter does
+     *
+     * @return {@link Boolean whether names can be promoted to values}
+     */
+    private static boolean probe() {
+        try {
+            JsonObject object = new JsonObject();
+            object.addProperty("key", 1);
+            BinaryJsonReader reader = new BinaryJsonReader(ByteBuffer.wrap(JsonSnapshot.encode(object)));
+
+            reader.beginObject();
+            if (!reader.hasNext()) return false;
+
+            JsonReaderInternalAccess.INSTANCE.promoteNameToValue(reader);
+            boolean valid = "key".equals(reader.nextString()) && reader.nextInt() == 1;
+            reader.endObject();
+            return valid;
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = this.peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token);
+        }
+    }
+
+    private static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException exception) {
+            try {
+                return new BigDecimal(text).longValueExact();
+            } catch (ArithmeticException inexact) {
+                throw new NumberFormatException("Expected a long but was " + text);
+            }
+        }
+    }
+
+    private JsonToken tokenOf(byte tag) {
+        switch (tag) {
+            case JsonSnapshot.NULL:
+                return JsonToken.NULL;
+            case JsonSnapshot.TRUE:
+            case JsonSnapshot.FALSE:
+                return JsonToken.BOOLEAN;
+            case JsonSnapshot.INTEGER:
+            case JsonSnapshot.NUMBER:
+                return JsonToken.NUMBER;
+            case JsonSnapshot.STRING:
+                return JsonToken.STRING;
+            case JsonSnapshot.ARRAY:
+                return JsonToken.BEGIN_ARRAY;
+            case JsonSnapshot.OBJECT:
+                return JsonToken.BEGIN_OBJECT;
+            default:
+                throw new IllegalStateException("[Storage] Unknown snapshot tag " + tag + "!");
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package xyz.refinedev.api.storage.json;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import xyz.refinedev.api.storage.mongo.write.KeyedSerialExecutor;
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Keyed alternative to {@link JsonStorage} that keeps one file per key, for per-player data.
+ * Files are spread over 256 subdirectories by a hash of the key, {@code <name>/3f/<key>.json},
+ * so no directory grows too large. Writes of different keys never wait for each other and
+ * replace the file atomically like {@link JsonStorage#save} does. Writes of the same key,
+ * sync or async, run one at a time in the order they were made.
+ * <p>
+ * The set of keys is only read from disk when it is first needed and kept up to date
+ * by this storage afterwards. {@link #loadAll(Type, int)} reads and decodes all files
+ * on several threads at once.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@SuppressWarnings("unused")
+public class DirectoryJsonStorage<V> {
+
+    private static final Logger LOGGER = LogManager.getLogger(DirectoryJsonStorage.class);
+    private static final String EXTENSION = ".json";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final String name;
+    private final File directory;
+    private final Gson gson;
+    private final Executor executor;
+
+    /**
+     * Runs the writes of a key in order, a waiting async put is replaced by a newer one
+     */
+    private final KeyedSerialExecutor writer;
+    /**
+     * Every key that has a file, null until it is first needed
+     */
+    private volatile Set<UUID> keys;
+    private final Object keysLock = new Object();
+    private boolean fsync;
+
+    public DirectoryJsonStorage(String name, JavaPlugin plugin, Gson gson) {
+        this(name, plugin, gson, StorageExecutors.getDefault());
+    }
+
+    public DirectoryJsonStorage(String name, JavaPlugin plugin, Gson gson, Executor executor) {
+        this(name, new File(plugin.getDataFolder().getAbsolutePath() + File.separator + "data"), gson, executor);
+    }
+
+    public DirectoryJsonStorage(String name, File directory, Gson gson) {
+        this(name, directory, gson, StorageExecutors.getDefault());
+    }
+
+    /**
+     * Create a storage that keeps its files in a directory of the given name
+     *
+     * @param name      {@link String name of the directory}
+     * @param directory {@link File parent directory}
+     * @param gson      {@link Gson gson instance}
+     * @param executor  {@link Executor executor for file I/O}
+     */
+    public DirectoryJsonStorage(String name, File directory, Gson gson, Executor executor) {
+        this.name = name;
+        this.directory = new File(directory, name);
+        this.gson = gson;
+        this.executor = executor;
+        this.writer = new KeyedSerialExecutor(executor);
+
+        if (!this.directory.exists() && !this.directory.mkdirs()) {
+            LOGGER.info("[Storage] Couldn't create " + name + "'s storage");
+        }
+    }
+
+    /**
+     * Only finish writes once they reached the disk, makes every write wait for it
+     *
+     * @return {@link DirectoryJsonStorage this storage}
+     */
+    public DirectoryJsonStorage<V> enableFsync() {
+        this.fsync = true;
+        return this;
+    }
+
+    /**
+     * Load the value of a key
+     *
+     * @param key  {@link UUID key}
+     * @param type {@link Type type of the value}
+     * @return     {@link V value, null if there is none or it can't be read}
+     */
+    public V get(UUID key, Type type) {
+        try {
+            return this.read(this.file(key), type);
+        } catch (IOException | JsonParseException exception) {
+            LOGGER.error("[Storage] Unable to load " + key + " of " + this.name + ", check for syntax errors!", exception);
+            return null;
+        }
+    }
+
+    public CompletableFuture<V> getAsync(UUID key, Type type) {
+        return CompletableFuture.supplyAsync(() -> this.get(key, type), this.executor);
+    }
+
+    /**
+     * Store the value of a key, replacing its file atomically
+     *
+     * @param key   {@link UUID key}
+     * @param value {@link V value}
+     * @param type  {@link Type type of the value}
+     */
+    public void put(UUID key, V value, Type type) {
+        join(this.writer.submit(key, () -> this.write(key, value, type), false));
+    }
+
+    public CompletableFuture<Void> putAsync(UUID key, V value, Type type) {
+        return this.writer.submit(key, () -> this.write(key, value, type), true);
+    }
+
+    /**
+     * Delete the file of a key
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Boolean whether there was one}
+     */
+    public boolean delete(UUID key) {
+        return join(this.deleteAsync(key));
+    }
+
+    public CompletableFuture<Boolean> deleteAsync(UUID key) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        this.writer.submit(key, () -> result.complete(this.remove(key)), false).whenComplete((ignored, throwable) -> {
+            if (throwable != null) result.completeExceptionally(throwable);
+        });
+        return result;
+    }
+
+    public boolean contains(UUID key) {
+        Set<UUID> keys = this.keys;
+        if (keys != null) {
+            return keys.contains(key);
+        }
+        return Files.exists(this.file(key));
+    }
+
+    /**
+     * Every key that has a file, read from disk the first time it is called
+     *
+     * @return {@link Set unmodifiable view of the keys}
+     */
+    public Set<UUID> keys() {
+        Set<UUID> keys = this.keys;
+        if (keys == null) {
+            synchronized (this.keysLock) {
+                keys = this.keys;
+                if (keys == null) {
+                    keys = this.scanKeys();
+                    this.keys = keys;
+                }
+            }
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * Load every key with as many threads as there are processors
+     *
+     * @param type {@link Type type of the values}
+     * @return     {@link Map values by key}
+     */
+    public Map<UUID, V> loadAll(Type type) {
+        return this.loadAll(type, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Load every key, reading and decoding files on {@code parallelism} tasks of the executor at once.
+     * Files that can't be read are logged and left out.
+     *
+     * @param type        {@link Type type of the values}
+     * @param parallelism {@link Integer amount of files loaded at the same time}
+     * @return            {@link Map values by key}
+     */
+    public Map<UUID, V> loadAll(Type type, int parallelism) {
+        return this.loadAllAsync(type, parallelism).join();
+    }
+
+    public CompletableFuture<Map<UUID, V>> loadAllAsync(Type type, int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "[Storage] Parallelism must be positive!");
+
+        return CompletableFuture.supplyAsync(() -> new ArrayList<>(this.keys()), this.executor).thenCompose(keys -> {
+            Map<UUID, V> values = new ConcurrentHashMap<>(keys.size() * 2);
+            AtomicInteger next = new AtomicInteger();
+
+            // Every worker takes the next key until none are left, so a few big files don't hold up one worker
+            List<CompletableFuture<Void>> workers = new ArrayList<>(parallelism);
+            for (int i = 0; i < Math.min(parallelism, keys.size()); i++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < keys.size()) {
+                        UUID key = keys.get(index);
+                        V value = this.get(key, type);
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    }
+                }, this.executor));
+            }
+            return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> values);
+        });
+    }
+
+    private void write(UUID key, V value, Type type) {
+        Path file = this.file(key);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), BUFFER_SIZE);
+                this.gson.toJson(value, type, writer);
+                writer.flush();
+                if (this.fsync) {
+                    channel.force(true);
+                }
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("[Storage] Unable to save " + key + " of " + this.name + "!", exception);
+        }
+        this.updateKeys(key, true);
+    }
+
+    private boolean remove(UUID key) {
+        boolean deleted;
+        try {
+            deleted = Files.deleteIfExists(this.file(key));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("[Storage] Unable to delete " + key + " of " + this.name + "!", exception);
+        }
+        this.updateKeys(key, false);
+        return deleted;
+    }
+
+    private V read(Path file, Type type) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return this.gson.fromJson(reader, type);
+        } catch (NoSuchFileException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Keep the key index up to date after a write, called by the key's writer once the file was written or deleted
+     */
+    private void updateKeys(UUID key, boolean present) {
+        Set<UUID> keys = this.keys;
+        if (keys == null) {
+            synchronized (this.keysLock) {
+                // A scan that is running may have missed the file, wait for it to be published
+                keys = this.keys;
+                if (keys == null) return;
+            }
+        }
+        if (present) {
+            keys.add(key);
+        } else {
+            keys.remove(key);
+        }
+    }
+
+    private Set<UUID> scanKeys() {
+        Set<UUID> keys = ConcurrentHashMap.newKeySet();
+        File[] buckets = this.directory.listFiles(File::isDirectory);
+        if (buckets == null) {
+            return keys;
+        }
+
+        for (File bucket : buckets) {
+            String[] files = bucket.list((dir, file) -> file.endsWith(EXTENSION));
+            if (files == null) continue;
+
+            for (String file : files) {
+                try {
+                    keys.add(UUID.fromString(file.substring(0, file.length() - EXTENSION.length())));
+                } catch (IllegalArgumentException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+        return keys;
+    }
+
+    private Path file(UUID key) {
+        int hash = key.hashCode();
+        String bucket = String.format("%02x", (hash ^ hash >>> 16) & 0xFF);
+        return new File(new File(this.directory, bucket), key + EXTENSION).toPath();
+    }
+
+    /**
+     * Wait for a write, rethrowing its failure as it was thrown
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw exception;
+        }
+    }
+}
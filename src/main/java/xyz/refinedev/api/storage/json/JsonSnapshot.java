@@ -0,0 +1,392 @@
+package xyz.refinedev.api.storage.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.internal.bind.JsonTreeReader;
+import com.google.gson.stream.JsonReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Binary copy of a JSON file, read instead of the text when it still matches it.
+ * The header holds the modification time, size and CRC32 of the JSON file it was made from,
+ * the snapshot is only used while all three still match, so editing the JSON by hand
+ * always wins. The body is the JSON tree with length-prefixed strings, varint integers
+ * and every object member name stored once, optionally deflated, and is decoded
+ * by Gson through a {@link BinaryJsonReader}.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+final class JsonSnapshot {
+
+    private static final Logger LOGGER = LogManager.getLogger(JsonSnapshot.class);
+
+    private static final int MAGIC = 0x524A534E;
+    private static final byte FORMAT = 1;
+    private static final byte COMPRESSED = 1;
+    /**
+     * magic, format, flags, JSON modification time, size and checksum, raw and stored body length
+     */
+    private static final int HEADER = 4 + 1 + 1 + 8 + 8 + 8 + 4 + 4;
+
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte INTEGER = 3;
+    /**
+     * Any other number, kept as its text so nothing is lost
+     */
+    static final byte NUMBER = 4;
+    static final byte STRING = 5;
+    static final byte ARRAY = 6;
+    static final byte OBJECT = 7;
+    static final byte END_ARRAY = 8;
+
+    /**
+     * Member names are 0 at the end of an object, 1 before a new name, and 2 + index for names seen before
+     */
+    static final int END_OBJECT = 0;
+    static final int NEW_NAME = 1;
+
+    private final File json;
+    private final File file;
+    private final File tempFile;
+    private final boolean compress;
+
+    JsonSnapshot(File json, boolean compress) {
+        this.json = json;
+        this.file = new File(json.getParentFile(), json.getName() + ".snapshot");
+        this.tempFile = new File(json.getParentFile(), json.getName() + ".snapshot.tmp");
+        this.compress = compress;
+    }
+
+    /**
+     * Map the snapshot and open a reader over it
+     *
+     * @return {@link JsonReader reader, null if there is no snapshot or it doesn't match the JSON file}
+     */
+    JsonReader open() {
+        try {
+            if (!this.file.exists() || this.file.lastModified() < this.json.lastModified()) {
+                return null;
+            }
+
+            ByteBuffer body;
+            try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+                if (channel.size() < HEADER) return null;
+
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.getInt() != MAGIC || mapped.get() != FORMAT) return null;
+
+                byte flags = mapped.get();
+                long modified = mapped.getLong();
+                long size = mapped.getLong();
+                long checksum = mapped.getLong();
+                int rawLength = mapped.getInt();
+                int storedLength = mapped.getInt();
+
+                if (modified != this.json.lastModified() || size != this.json.length() || checksum != checksum(this.json.toPath())) {
+                    return null;
+                }
+                if (mapped.remaining() != storedLength) return null;
+
+                body = (flags & COMPRESSED) != 0 ? inflate(mapped, rawLength) : mapped;
+            }
+
+            if (BinaryJsonReader.isSupported()) {
+                return new BinaryJsonReader(body);
+            }
+            // Unknown Gson internals, go through a tree instead
+            JsonElement tree = readValue(body, body.get(), new ArrayList<>());
+            return body.hasRemaining() ? null : new JsonTreeReader(tree);
+        } catch (IOException | RuntimeException exception) {
+            // Corrupt or from an older format, the JSON text is read instead
+            LOGGER.warn("[Storage] Ignoring unreadable snapshot " + this.file + ".", exception);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the snapshot, called right after the JSON file was written from the same tree
+     *
+     * @param tree     {@link JsonElement tree}
+     * @param checksum {@link Long CRC32 of the JSON file}
+     */
+    void write(JsonElement tree, long checksum) {
+        try {
+            byte[] body = encode(tree);
+            int rawLength = body.length;
+            boolean compressed = false;
+            if (this.compress) {
+                byte[] deflated = deflate(body);
+                if (deflated.length < body.length) {
+                    body = deflated;
+                    compressed = true;
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).put(FORMAT).put(compressed ? COMPRESSED : 0);
+            header.putLong(this.json.lastModified()).putLong(this.json.length()).putLong(checksum);
+            header.putInt(rawLength).putInt(body.length);
+            header.flip();
+
+            Path temp = this.tempFile.toPath();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] buffers = {header, ByteBuffer.wrap(body)};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+            }
+
+            try {
+                Files.move(temp, this.file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temp, this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.warn("[Storage] Unable to write snapshot " + this.file + ", the JSON file will be read instead.", exception);
+            this.delete();
+        }
+    }
+
+    /**
+     * Drop the snapshot, for saves that don't produce a tree
+     */
+    void delete() {
+        if (this.file.exists() && !this.file.delete()) {
+            LOGGER.warn("[Storage] Couldn't delete outdated snapshot " + this.file + ".");
+        }
+    }
+
+    static byte[] encode(JsonElement tree) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        writeValue(out, tree, new HashMap<>());
+        return out.toByteArray();
+    }
+
+    static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static JsonElement readValue(ByteBuffer buffer, byte tag, List<String> names) {
+        switch (tag) {
+            case NULL:
+                return JsonNull.INSTANCE;
+            case TRUE:
+                return new JsonPrimitive(true);
+            case FALSE:
+                return new JsonPrimitive(false);
+            case INTEGER:
+                long zigzag = readVarLong(buffer);
+                return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+            case NUMBER:
+                return new JsonPrimitive(new LazilyParsedNumber(readString(buffer)));
+            case STRING:
+                return new JsonPrimitive(readString(buffer));
+            case ARRAY:
+                JsonArray array = new JsonArray();
+                for (byte next = buffer.get(); next != END_ARRAY; next = buffer.get()) {
+                    array.add(readValue(buffer, next, names));
+                }
+                return array;
+            case OBJECT:
+                JsonObject object = new JsonObject();
+                for (int reference = (int) readVarLong(buffer); reference != END_OBJECT; reference = (int) readVarLong(buffer)) {
+                    String name;
+                    if (reference == NEW_NAME) {
+                        name = readString(buffer);
+                        names.add(name);
+                    } else {
+                        name = names.get(reference - 2);
+                    }
+                    object.add(name, readValue(buffer, buffer.get(), names));
+                }
+                return object;
+            default:
+                throw new IllegalStateException("[Storage] Unknown snapshot tag " + tag + "!");
+        }
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, JsonElement element, Map<String, Integer> names) {
+        if (element == null || element.isJsonNull()) {
+            out.write(NULL);
+        } else if (element.isJsonArray()) {
+            out.write(ARRAY);
+            for (JsonElement child : element.getAsJsonArray()) {
+                writeValue(out, child, names);
+            }
+            out.write(END_ARRAY);
+        } else if (element.isJsonObject()) {
+            out.write(OBJECT);
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                Integer index = names.get(member.getKey());
+                if (index == null) {
+                    names.put(member.getKey(), names.size());
+                    writeVarLong(out, NEW_NAME);
+                    writeString(out, member.getKey());
+                } else {
+                    writeVarLong(out, index + 2);
+                }
+                writeValue(out, member.getValue(), names);
+            }
+            writeVarLong(out, END_OBJECT);
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isString()) {
+                out.write(STRING);
+                writeString(out, primitive.getAsString());
+            } else {
+                writeNumber(out, primitive.getAsNumber());
+            }
+        }
+    }
+
+    private static void writeNumber(ByteArrayOutputStream out, Number number) {
+        Long integer = null;
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            integer = number.longValue();
+        } else if (number instanceof BigInteger && ((BigInteger) number).bitLength() < 64) {
+            integer = number.longValue();
+        } else {
+            String text = number.toString();
+            if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1) {
+                try {
+                    integer = Long.parseLong(text);
+                } catch (NumberFormatException ignored) {
+                    // Out of the long range, kept as text
+                }
+            }
+        }
+
+        if (integer == null) {
+            out.write(NUMBER);
+            writeString(out, number.toString());
+        } else {
+            out.write(INTEGER);
+            writeVarLong(out, (integer << 1) ^ (integer >> 63));
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = (int) readVarLong(buffer);
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte next = buffer.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("[Storage] Malformed varint in snapshot!");
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer stored, int rawLength) throws IOException {
+        byte[] input = new byte[stored.remaining()];
+        stored.get(input);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new IOException("[Storage] Snapshot body ends early!");
+                }
+                read += inflated;
+            }
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException exception) {
+            throw new IOException("[Storage] Snapshot body is corrupt!", exception);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,17 +1,54 @@
 package xyz.refinedev.api.storage.json;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * This Project is property of Refine Development © 2021 - 2022
@@ -26,16 +63,58 @@ import java.util.concurrent.CompletableFuture;
 public class JsonStorage<T> {
     
     private static final Logger LOGGER = LogManager.getLogger(JsonStorage.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private final String name;
     private final File file;
+    /**
+     * Saves are written here first and then moved over the file, so it is never half written
+     */
+    private final File tempFile;
     private final Gson gson;
+    private final Executor executor;
+
+    /**
+     * Held while the file is written, only one save writes at a time
+     */
+    private final Object writeLock = new Object();
+    /**
+     * Guards the pending save and whether a writer is scheduled
+     */
+    private final Object queueLock = new Object();
+    private PendingSave<T> pending;
+    private boolean writing;
+    private boolean fsync;
+    /**
+     * Whether the gson instance pretty prints, streamed saves are formatted the same way
+     */
+    private final boolean prettyPrinting;
+    /**
+     * Binary copy of the file read on startup instead of the text, null unless enabled
+     */
+    private JsonSnapshot snapshot;
 
     public JsonStorage(String name, JavaPlugin plugin, Gson gson) {
-        this(name, new File(plugin.getDataFolder().getAbsolutePath() + File.separator + "data"), gson);
+        this(name, plugin, gson, StorageExecutors.getDefault());
+    }
+
+    public JsonStorage(String name, JavaPlugin plugin, Gson gson, Executor executor) {
+        this(name, new File(plugin.getDataFolder().getAbsolutePath() + File.separator + "data"), gson, executor);
     }
 
     public JsonStorage(String name, File directory, Gson gson) {
+        this(name, directory, gson, StorageExecutors.getDefault());
+    }
+
+    /**
+     * Create a storage that saves asynchronously on the given executor
+     *
+     * @param name      {@link String name of the file}
+     * @param directory {@link File directory of the file}
+     * @param gson      {@link Gson gson instance}
+     * @param executor  {@link Executor executor for file I/O}
+     */
+    public JsonStorage(String name, File directory, Gson gson, Executor executor) {
         if (!directory.exists()) {
             boolean created = directory.mkdir();
             if (!created) {
@@ -44,8 +123,16 @@ public class JsonStorage<T> {
         }
 
         this.file = new File(directory, name + ".json");
+        this.tempFile = new File(directory, name + ".json.tmp");
         this.gson = gson;
         this.name = name;
+        this.executor = executor;
+        // Gson has no getter for it
+        this.prettyPrinting = gson.toJson(Collections.singletonList(0)).indexOf('\n') >= 0;
+
+        if (this.tempFile.exists() && !this.tempFile.delete()) {
+            LOGGER.info("[Storage] Couldn't delete the unfinished save of " + name + "'s storage");
+        }
 
         if (!this.file.exists()) {
             try {
@@ -57,6 +144,31 @@ public class JsonStorage<T> {
         }
     }
 
+    /**
+     * Only finish saves once the data reached the disk, so a power loss right after
+     * can't lose them. Makes every save wait for the disk, off by default.
+     *
+     * @return {@link JsonStorage this storage}
+     */
+    public JsonStorage<T> enableFsync() {
+        this.fsync = true;
+        return this;
+    }
+
+    /**
+     * Keep a binary snapshot next to the file, {@code <name>.json.snapshot}, that {@link #getData}
+     * maps and decodes instead of parsing the text. It is written on every save of the data and
+     * only used while the modification time, size and checksum of the JSON file still match
+     * the ones it was written for, so the JSON stays the file to edit. Streamed saves drop it.
+     *
+     * @param compress {@link Boolean whether the snapshot is deflated}
+     * @return         {@link JsonStorage this storage}
+     */
+    public JsonStorage<T> enableSnapshot(boolean compress) {
+        this.snapshot = new JsonSnapshot(this.file, compress);
+        return this;
+    }
+
     /**
      * Returns the data, in the way you stored.
      * Ex: List<Object>, then it will return that as it is.
@@ -65,7 +177,22 @@ public class JsonStorage<T> {
      * @return     {@link T data}
      */
     public T getData(Type type) {
-        try (FileReader reader = new FileReader(this.file)) {
+        if (this.snapshot != null) {
+            JsonReader reader = this.snapshot.open();
+            if (reader != null) {
+                try {
+                    T data = this.gson.fromJson(reader, type);
+                    if (reader.peek() == JsonToken.END_DOCUMENT) {
+                        return data;
+                    }
+                } catch (IOException | RuntimeException exception) {
+                    LOGGER.warn("[Storage] Unable to read the snapshot of " + name + ", reading the JSON file instead.", exception);
+                }
+            }
+            return this.loadAndSnapshot(type);
+        }
+
+        try (Reader reader = this.openReader()) {
             return this.gson.fromJson(reader, type);
         } catch (IOException exception) {
             LOGGER.info("[Storage] Unable to load JSON Storage for " + name + ", check for syntax errors!");
@@ -75,12 +202,26 @@ public class JsonStorage<T> {
     }
 
     /**
-     * Save data asynchronously
+     * Save data asynchronously. If an earlier save is still waiting to be written it is
+     * replaced by this one, only the latest data is written and both futures complete with it.
      *
      * @param list {@link T type}
+     * @return     {@link CompletableFuture completed once saved}
      */
-    public void saveAsync(T list) {
-        CompletableFuture.runAsync(() -> this.save(list));
+    public CompletableFuture<Void> saveAsync(T list) {
+        synchronized (this.queueLock) {
+            if (this.pending != null) {
+                this.pending.data = list;
+                return this.pending.future;
+            }
+
+            this.pending = new PendingSave<>(list);
+            if (!this.writing) {
+                this.writing = true;
+                this.executor.execute(this::drain);
+            }
+            return this.pending.future;
+        }
     }
 
     /**
@@ -89,10 +230,365 @@ public class JsonStorage<T> {
      * @param list {@link T type}
      */
     public void save(T list) {
-        try (FileWriter fileWriter = new FileWriter(this.file)) {
-            this.gson.toJson(list, fileWriter);
+        if (this.snapshot != null) {
+            JsonElement tree = this.gson.toJsonTree(list);
+            this.saveNow(writer -> this.gson.toJson(tree, writer), tree);
+        } else {
+            this.saveNow(writer -> this.gson.toJson(list, writer), null);
+        }
+    }
+
+    /**
+     * Save a top-level array one element at a time, only the element
+     * being written has to be in memory
+     *
+     * @param elements    {@link Iterator elements}
+     * @param elementType {@link Type type of the elements}
+     */
+    public void saveElements(Iterator<?> elements, Type elementType) {
+        this.saveNow(writer -> {
+            JsonWriter json = this.newJsonWriter(writer);
+            json.beginArray();
+            while (elements.hasNext()) {
+                this.gson.toJson(elements.next(), elementType, json);
+            }
+            json.endArray();
+            json.flush();
+        }, null);
+    }
+
+    /**
+     * Save a top-level object one entry at a time, only the entry being written has to be in memory.
+     * Keys are written with the adapter of their class, see {@link #saveEntries(Iterator, Type, Type)}.
+     *
+     * @param entries   {@link Iterator entries}
+     * @param valueType {@link Type type of the values}
+     */
+    public void saveEntries(Iterator<? extends Map.Entry<?, ?>> entries, Type valueType) {
+        this.saveEntries(entries, null, valueType);
+    }
+
+    /**
+     * Save a top-level object one entry at a time, only the entry being written has to be in memory.
+     * Keys are written as the unquoted value their type adapter produces, the form
+     * {@link #streamEntries} and {@link #getData} read them back with through the same adapter.
+     * That is not always {@code String.valueOf(key)} like Gson's own map output, enums with
+     * {@code @SerializedName} for example are written with that name. Keys the adapter writes
+     * as an object or array fall back to {@code String.valueOf(key)}, those can't be read back.
+     *
+     * @param entries   {@link Iterator entries}
+     * @param keyType   {@link Type type of the keys, null for the class of each key}
+     * @param valueType {@link Type type of the values}
+     */
+    @SuppressWarnings("unchecked")
+    public void saveEntries(Iterator<? extends Map.Entry<?, ?>> entries, Type keyType, Type valueType) {
+        TypeAdapter<Object> keyAdapter = keyType == null ? null : (TypeAdapter<Object>) this.gson.getAdapter(TypeToken.get(keyType));
+        this.saveNow(writer -> {
+            JsonWriter json = this.newJsonWriter(writer);
+            json.beginObject();
+            while (entries.hasNext()) {
+                Map.Entry<?, ?> entry = entries.next();
+                Object key = entry.getKey();
+                TypeAdapter<Object> adapter = keyAdapter != null || key == null ? keyAdapter : (TypeAdapter<Object>) this.gson.getAdapter(key.getClass());
+                json.name(keyToString(adapter, key));
+                this.gson.toJson(entry.getValue(), valueType, json);
+            }
+            json.endObject();
+            json.flush();
+        }, null);
+    }
+
+    /**
+     * Read the elements of a top-level array one at a time, only the current
+     * one is in memory. The stream has to be closed, it holds the file open.
+     *
+     * @param elementType {@link Type type of the elements}
+     * @return            {@link Stream elements, empty if the file is}
+     */
+    public <E> Stream<E> streamElements(Type elementType) {
+        JsonReader reader = this.openJsonReader(JsonToken.BEGIN_ARRAY);
+        if (reader == null) {
+            return Stream.empty();
+        }
+        return this.stream(reader, () -> this.gson.fromJson(reader, elementType));
+    }
+
+    /**
+     * Read the entries of a top-level object one at a time, only the current
+     * one is in memory. The stream has to be closed, it holds the file open.
+     *
+     * @param keyType   {@link Type type of the keys, read from their string form}
+     * @param valueType {@link Type type of the values}
+     * @return          {@link Stream entries, empty if the file is}
+     */
+    @SuppressWarnings("unchecked")
+    public <K, E> Stream<Map.Entry<K, E>> streamEntries(Type keyType, Type valueType) {
+        JsonReader reader = this.openJsonReader(JsonToken.BEGIN_OBJECT);
+        if (reader == null) {
+            return Stream.empty();
+        }
+
+        TypeAdapter<K> keyAdapter = (TypeAdapter<K>) this.gson.getAdapter(TypeToken.get(keyType));
+        return this.stream(reader, () -> {
+            K key = keyAdapter.fromJsonTree(new JsonPrimitive(reader.nextName()));
+            E value = this.gson.fromJson(reader, valueType);
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+        });
+    }
+
+    /**
+     * Parse the text when there is no usable snapshot, and write one for the next start
+     */
+    private T loadAndSnapshot(Type type) {
+        try {
+            long modified = this.file.lastModified();
+            byte[] bytes = Files.readAllBytes(this.file.toPath());
+            if (bytes.length == 0) {
+                return null;
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, 0, bytes.length);
+            JsonElement tree = new JsonParser().parse(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+
+            synchronized (this.writeLock) {
+                // Only if nothing saved over the file in the meantime
+                if (this.file.lastModified() == modified && this.file.length() == bytes.length) {
+                    this.snapshot.write(tree, checksum.getValue());
+                }
+            }
+            return this.gson.fromJson(tree, type);
         } catch (IOException exception) {
+            LOGGER.info("[Storage] Unable to load JSON Storage for " + name + ", check for syntax errors!");
             exception.printStackTrace();
         }
+        return null;
+    }
+
+    /**
+     * Write right away, taking over a pending asynchronous save
+     */
+    private void saveNow(JsonOutput output, JsonElement tree) {
+        PendingSave<T> replaced = null;
+        try {
+            // Taken and written under the write lock, so a drain can't write it after this save
+            synchronized (this.writeLock) {
+                synchronized (this.queueLock) {
+                    // Older than this save, it must not be written after it
+                    replaced = this.pending;
+                    this.pending = null;
+                }
+                this.write(output, tree);
+            }
+            if (replaced != null) replaced.future.complete(null);
+        } catch (IOException exception) {
+            LOGGER.error("[Storage] Unable to save JSON Storage for " + name + "!", exception);
+            if (replaced != null) replaced.future.completeExceptionally(new UncheckedIOException(exception));
+        } catch (RuntimeException exception) {
+            if (replaced != null) replaced.future.completeExceptionally(exception);
+            throw exception;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            PendingSave<T> save = null;
+            try {
+                // Held from taking the save until it is written, or a newer save could be written first
+                synchronized (this.writeLock) {
+                    synchronized (this.queueLock) {
+                        save = this.pending;
+                        this.pending = null;
+                        if (save == null) {
+                            this.writing = false;
+                            return;
+                        }
+                    }
+
+                    T data = save.data;
+                    if (this.snapshot != null) {
+                        JsonElement tree = this.gson.toJsonTree(data);
+                        this.write(writer -> this.gson.toJson(tree, writer), tree);
+                    } else {
+                        this.write(writer -> this.gson.toJson(data, writer), null);
+                    }
+                }
+                save.future.complete(null);
+            } catch (IOException exception) {
+                LOGGER.error("[Storage] Unable to save JSON Storage for " + name + "!", exception);
+                save.future.completeExceptionally(new UncheckedIOException(exception));
+            } catch (RuntimeException exception) {
+                save.future.completeExceptionally(exception);
+            }
+        }
+    }
+
+    /**
+     * Write the data to the temporary file and move it over the real one,
+     * then replace the snapshot with the tree the data was written from, if there is one
+     */
+    private void write(JsonOutput output, JsonElement tree) throws IOException {
+        synchronized (this.writeLock) {
+            Path temp = this.tempFile.toPath();
+            CRC32 checksum = new CRC32();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                CheckedOutputStream out = new CheckedOutputStream(Channels.newOutputStream(channel), checksum);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                output.write(writer);
+                writer.flush();
+                if (this.fsync) {
+                    channel.force(true);
+                }
+            }
+
+            try {
+                Files.move(temp, this.file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temp, this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (this.snapshot != null) {
+                if (tree != null) {
+                    this.snapshot.write(tree, checksum.getValue());
+                } else {
+                    this.snapshot.delete();
+                }
+            }
+        }
+    }
+
+    private Reader openReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(this.file.toPath()), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Open the file and step into its top-level array or object
+     *
+     * @return {@link JsonReader reader, null if the file is empty or holds null}
+     */
+    private JsonReader openJsonReader(JsonToken expected) {
+        JsonReader reader = null;
+        try {
+            if (this.file.length() == 0) {
+                return null;
+            }
+            reader = new JsonReader(this.openReader());
+            reader.setLenient(true);
+
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                reader.close();
+                return null;
+            }
+            if (token != expected) {
+                throw new JsonSyntaxException("[Storage] Expected " + expected + " at the top of " + this.file + " but found " + token + "!");
+            }
+
+            if (expected == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+            } else {
+                reader.beginObject();
+            }
+            return reader;
+        } catch (IOException exception) {
+            closeQuietly(reader);
+            throw new UncheckedIOException(exception);
+        } catch (RuntimeException exception) {
+            closeQuietly(reader);
+            throw exception;
+        }
+    }
+
+    /**
+     * Lazily read what is left in the current array or object of the reader
+     */
+    private <E> Stream<E> stream(JsonReader reader, JsonElementReader<E> elements) {
+        Iterator<E> iterator = new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return reader.hasNext();
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }
+
+            @Override
+            public E next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return elements.read();
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }
+        };
+
+        Spliterator<E> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(() -> closeQuietly(reader));
+    }
+
+    /**
+     * The key as the unquoted primitive its adapter writes, keys that aren't written as a primitive fall back to their string form
+     */
+    private static String keyToString(TypeAdapter<Object> adapter, Object key) {
+        if (key == null) {
+            return "null";
+        }
+
+        JsonElement element = adapter.toJsonTree(key);
+        if (!element.isJsonPrimitive()) {
+            return element.isJsonNull() ? "null" : String.valueOf(key);
+        }
+
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isNumber()) {
+            return String.valueOf(primitive.getAsNumber());
+        }
+        if (primitive.isBoolean()) {
+            return Boolean.toString(primitive.getAsBoolean());
+        }
+        return primitive.getAsString();
+    }
+
+    private JsonWriter newJsonWriter(Writer writer) {
+        JsonWriter json = new JsonWriter(writer);
+        if (this.prettyPrinting) {
+            json.setIndent("  ");
+        }
+        return json;
+    }
+
+    private static void closeQuietly(JsonReader reader) {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private interface JsonOutput {
+
+        void write(Writer writer) throws IOException;
+    }
+
+    private interface JsonElementReader<E> {
+
+        E read() throws IOException;
+    }
+
+    /**
+     * Latest data waiting to be written, shared by every save it replaced
+     */
+    private static class PendingSave<T> {
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private T data;
+
+        private PendingSave(T data) {
+            this.data = data;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,754 @@
+package xyz.refinedev.api.storage.json;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Keyed alternative to {@link JsonStorage} for maps that change one entry at a time.
+ * Every put or delete appends a single JSON line to the newest segment of a log,
+ * {@code {"k":"<key>","v":<value>}} or {@code {"k":"<key>","d":true}}, and an in-memory
+ * index points every key to its latest record. A write costs the size of its record,
+ * not the size of all data.
+ * <p>
+ * Once enough of the log is overwritten or deleted records, the sealed segments are
+ * compacted in the background into one segment holding only the live records.
+ * On startup the index is rebuilt by scanning the segments, a torn record at the end
+ * of the newest one is cut off.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@SuppressWarnings("unused")
+public class LogJsonStorage<V> {
+
+    private static final Logger LOGGER = LogManager.getLogger(LogJsonStorage.class);
+
+    private static final String SEGMENT = ".jsonl";
+    /**
+     * Compaction output that is still being written, dropped on startup
+     */
+    private static final String COMPACTING = ".compacting";
+    /**
+     * Finished compaction output that replaces every segment up to its id
+     */
+    private static final String COMPACTED = ".compacted";
+    private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+
+    private final String name;
+    private final File directory;
+    private final Gson gson;
+    private final Executor executor;
+
+    /**
+     * Held for reading by lookups, for writing by appends and by compaction while it swaps segments
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Location> index = new HashMap<>();
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+
+    private int activeId;
+    private FileChannel active;
+    private long activeSize;
+    /**
+     * Bytes of all segments and how many of them are overwritten or deleted records
+     */
+    private long totalBytes;
+    private long garbageBytes;
+
+    private long segmentSize = 16 * 1024 * 1024;
+    private double compactRatio = 0.5;
+    private boolean fsync;
+
+    private boolean compacting;
+    private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+
+    public LogJsonStorage(String name, JavaPlugin plugin, Gson gson) {
+        this(name, plugin, gson, StorageExecutors.getDefault());
+    }
+
+    public LogJsonStorage(String name, JavaPlugin plugin, Gson gson, Executor executor) {
+        this(name, new File(plugin.getDataFolder().getAbsolutePath() + File.separator + "data"), gson, executor);
+    }
+
+    public LogJsonStorage(String name, File directory, Gson gson) {
+        this(name, directory, gson, StorageExecutors.getDefault());
+    }
+
+    /**
+     * Open the log of the given name, rebuilding its index
+     *
+     * @param name      {@link String name of the log, its segments are kept in a directory of that name}
+     * @param directory {@link File parent directory}
+     * @param gson      {@link Gson gson instance}
+     * @param executor  {@link Executor executor for asynchronous writes and compaction}
+     */
+    public LogJsonStorage(String name, File directory, Gson gson, Executor executor) {
+        this.name = name;
+        this.directory = new File(directory, name);
+        this.gson = gson;
+        this.executor = executor;
+
+        try {
+            Files.createDirectories(this.directory.toPath());
+            this.recover();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("[Storage] Unable to open log storage " + name + "!", exception);
+        }
+    }
+
+    /**
+     * Size a segment grows to before a new one is started, only sealed segments are compacted
+     *
+     * @param segmentSize {@link Long bytes}
+     * @return            {@link LogJsonStorage this storage}
+     */
+    public LogJsonStorage<V> withSegmentSize(long segmentSize) {
+        Preconditions.checkArgument(segmentSize > 0, "[Storage] Segment size must be positive!");
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Share of the log that has to be overwritten or deleted records before it is compacted
+     *
+     * @param compactRatio {@link Double ratio between 0 and 1}
+     * @return             {@link LogJsonStorage this storage}
+     */
+    public LogJsonStorage<V> withCompactRatio(double compactRatio) {
+        Preconditions.checkArgument(compactRatio > 0 && compactRatio < 1, "[Storage] Compact ratio must be between 0 and 1!");
+        this.compactRatio = compactRatio;
+        return this;
+    }
+
+    /**
+     * Only finish writes once they reached the disk, makes every write wait for it
+     *
+     * @return {@link LogJsonStorage this storage}
+     */
+    public LogJsonStorage<V> enableFsync() {
+        this.fsync = true;
+        return this;
+    }
+
+    /**
+     * Load the latest value of a key
+     *
+     * @param key  {@link UUID key}
+     * @param type {@link Type type of the value}
+     * @return     {@link V value, null if the key has none}
+     */
+    public V get(UUID key, Type type) {
+        String record;
+        this.lock.readLock().lock();
+        try {
+            Location location = this.index.get(key);
+            if (location == null) return null;
+
+            record = this.read(this.segments.get(location.segment), location);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return this.decode(record, type);
+    }
+
+    public CompletableFuture<V> getAsync(UUID key, Type type) {
+        return CompletableFuture.supplyAsync(() -> this.get(key, type), this.executor);
+    }
+
+    /**
+     * Load every live entry, reading each segment front to back
+     *
+     * @param type {@link Type type of the values}
+     * @return     {@link Map values by key}
+     */
+    public Map<UUID, V> getAll(Type type) {
+        List<Map.Entry<UUID, Location>> locations;
+        this.lock.readLock().lock();
+        try {
+            locations = new ArrayList<>(this.index.entrySet());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        locations.sort(Comparator.comparing((Map.Entry<UUID, Location> entry) -> entry.getValue().segment)
+                .thenComparingLong(entry -> entry.getValue().offset));
+
+        Map<UUID, V> values = new LinkedHashMap<>(locations.size() * 2);
+        for (Map.Entry<UUID, Location> entry : locations) {
+            // Compacted or written again since the snapshot, take what is there now
+            V value = this.get(entry.getKey(), type);
+            if (value != null) {
+                values.put(entry.getKey(), value);
+            }
+        }
+        return values;
+    }
+
+    public Set<UUID> keys() {
+        this.lock.readLock().lock();
+        try {
+            return new HashSet<>(this.index.keySet());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(UUID key) {
+        this.lock.readLock().lock();
+        try {
+            return this.index.containsKey(key);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.index.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store the value of a key, after the asynchronous writes that are still waiting
+     *
+     * @param key   {@link UUID key}
+     * @param value {@link V value}
+     * @param type  {@link Type type of the value}
+     */
+    public void put(UUID key, V value, Type type) {
+        Preconditions.checkNotNull(value, "[Storage] Use delete to remove a key!");
+        byte[] record = this.encode(key, value, type);
+        this.writeNow(() -> this.append(key, record, false));
+    }
+
+    public void delete(UUID key) {
+        byte[] record = this.encode(key, null, null);
+        this.writeNow(() -> this.append(key, record, true));
+    }
+
+    /**
+     * Store the value of a key asynchronously, asynchronous writes are applied in the order they were made
+     *
+     * @param key   {@link UUID key}
+     * @param value {@link V value}
+     * @param type  {@link Type type of the value}
+     * @return      {@link CompletableFuture completed once written}
+     */
+    public CompletableFuture<Void> putAsync(UUID key, V value, Type type) {
+        // Encoded now, later changes to the value are not saved
+        byte[] record = this.encode(key, value, type);
+        return this.enqueue(() -> this.append(key, record, false));
+    }
+
+    public CompletableFuture<Void> deleteAsync(UUID key) {
+        byte[] record = this.encode(key, null, null);
+        return this.enqueue(() -> this.append(key, record, true));
+    }
+
+    /**
+     * Rewrite the sealed segments to only their live records, unless a compaction is running already
+     *
+     * @return {@link CompletableFuture completed once compacted}
+     */
+    public CompletableFuture<Void> compactAsync() {
+        return CompletableFuture.runAsync(this::compact, this.executor);
+    }
+
+    /**
+     * Rewrite the sealed segments to only their live records, unless a compaction is running already
+     */
+    public void compact() {
+        int sealed;
+        Map<Integer, FileChannel> channels;
+        List<Map.Entry<UUID, Location>> live = new ArrayList<>();
+
+        this.lock.writeLock().lock();
+        try {
+            if (this.compacting) return;
+
+            // Start a new segment, everything before it won't change anymore
+            if (this.activeSize > 0) {
+                this.roll();
+            }
+            sealed = this.activeId - 1;
+            if (this.segments.headMap(sealed, true).isEmpty()) return;
+
+            this.compacting = true;
+            channels = new HashMap<>(this.segments.headMap(sealed, true));
+            for (Map.Entry<UUID, Location> entry : this.index.entrySet()) {
+                if (entry.getValue().segment <= sealed) {
+                    live.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        try {
+            this.compactInto(sealed, channels, live);
+        } catch (IOException exception) {
+            LOGGER.error("[Storage] Unable to compact log storage " + this.name + "!", exception);
+            throw new UncheckedIOException(exception);
+        } finally {
+            this.lock.writeLock().lock();
+            this.compacting = false;
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Close every segment, the storage can't be used afterwards
+     */
+    public void shutdown() {
+        this.writes.handle((ignored, throwable) -> null).join();
+        this.lock.writeLock().lock();
+        try {
+            for (FileChannel channel : this.segments.values()) {
+                channel.close();
+            }
+            this.segments.clear();
+        } catch (IOException exception) {
+            LOGGER.error("[Storage] Unable to close log storage " + this.name + "!", exception);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public long getTotalBytes() {
+        this.lock.readLock().lock();
+        try {
+            return this.totalBytes;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes of overwritten and deleted records, they are dropped by the next compaction
+     *
+     * @return {@link Long bytes}
+     */
+    public long getGarbageBytes() {
+        this.lock.readLock().lock();
+        try {
+            return this.garbageBytes;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private synchronized CompletableFuture<Void> enqueue(Runnable write) {
+        CompletableFuture<Void> future = this.writes.handle((ignored, throwable) -> (Void) null).thenRunAsync(write, this.executor);
+        this.writes = future;
+        return future;
+    }
+
+    /**
+     * Run a write on the calling thread once the writes queued before it are done,
+     * writes queued while it runs wait for it
+     */
+    private void writeNow(Runnable write) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        synchronized (this) {
+            previous = this.writes;
+            this.writes = done;
+        }
+
+        try {
+            previous.handle((ignored, throwable) -> null).join();
+            write.run();
+        } finally {
+            done.complete(null);
+        }
+    }
+
+    private void append(UUID key, byte[] record, boolean delete) {
+        boolean compact;
+        this.lock.writeLock().lock();
+        try {
+            if (this.activeSize >= this.segmentSize) {
+                this.roll();
+            }
+
+            long offset = this.activeSize;
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                this.active.write(buffer, offset + buffer.position());
+            }
+            if (this.fsync) {
+                this.active.force(false);
+            }
+            this.activeSize += record.length;
+            this.totalBytes += record.length;
+
+            Location previous = delete ? this.index.remove(key) : this.index.put(key, new Location(this.activeId, offset, record.length));
+            if (previous != null) {
+                this.garbageBytes += previous.length;
+            }
+            if (delete) {
+                this.garbageBytes += record.length;
+            }
+
+            compact = !this.compacting && this.totalBytes >= MIN_COMPACT_SIZE && this.garbageBytes >= this.totalBytes * this.compactRatio;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        if (compact) {
+            this.compactAsync().exceptionally(throwable -> null);
+        }
+    }
+
+    /**
+     * Seal the active segment and start the next one, called with the write lock held
+     */
+    private void roll() throws IOException {
+        this.activeId++;
+        this.active = this.open(this.segmentFile(this.activeId, SEGMENT), true);
+        this.activeSize = 0;
+        this.segments.put(this.activeId, this.active);
+    }
+
+    /**
+     * Copy the live records of every segment up to {@code sealed} into one segment that replaces them
+     */
+    private void compactInto(int sealed, Map<Integer, FileChannel> channels, List<Map.Entry<UUID, Location>> live) throws IOException {
+        live.sort(Comparator.comparing((Map.Entry<UUID, Location> entry) -> entry.getValue().segment)
+                .thenComparingLong(entry -> entry.getValue().offset));
+
+        Path output = this.segmentFile(sealed, COMPACTING);
+        Map<UUID, Location> moved = new HashMap<>(live.size() * 2);
+        long size = 0;
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<UUID, Location> entry : live) {
+                Location location = entry.getValue();
+                // Sealed segments are only ever removed by compaction, no lock needed to read them
+                ByteBuffer record = ByteBuffer.allocate(location.length);
+                this.readFully(channels.get(location.segment), record, location.offset);
+                record.flip();
+
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                moved.put(entry.getKey(), new Location(sealed, size, location.length));
+                size += location.length;
+            }
+            channel.force(true);
+        }
+
+        // From here on the compacted segment replaces every segment up to its id, even after a crash
+        move(output, this.segmentFile(sealed, COMPACTED));
+
+        this.lock.writeLock().lock();
+        try {
+            long removed = 0;
+            for (Map.Entry<Integer, FileChannel> segment : this.segments.headMap(sealed, true).entrySet()) {
+                removed += segment.getValue().size();
+                segment.getValue().close();
+            }
+            this.segments.headMap(sealed, true).clear();
+            this.replaceSegments(sealed);
+            this.segments.put(sealed, this.open(this.segmentFile(sealed, SEGMENT), false));
+
+            for (Map.Entry<UUID, Location> entry : moved.entrySet()) {
+                Location current = this.index.get(entry.getKey());
+                // Unless it was written again or deleted while compacting, then the copy is garbage already
+                if (current != null && current.segment <= sealed) {
+                    this.index.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            long before = this.totalBytes;
+            this.totalBytes = this.totalBytes - removed + size;
+            this.garbageBytes -= removed - size;
+            LOGGER.info("[Storage] Compacted log storage {} from {} to {} bytes.", this.name, before, this.totalBytes);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Delete every segment up to {@code id} and put the compacted one in its place
+     */
+    private void replaceSegments(int id) throws IOException {
+        for (Map.Entry<Integer, Path> segment : this.listSegments(SEGMENT).headMap(id, true).entrySet()) {
+            Files.delete(segment.getValue());
+        }
+        move(this.segmentFile(id, COMPACTED), this.segmentFile(id, SEGMENT));
+    }
+
+    /**
+     * Finish or drop an interrupted compaction and rebuild the index from the segments
+     */
+    private void recover() throws IOException {
+        for (Path unfinished : this.listSegments(COMPACTING).values()) {
+            Files.delete(unfinished);
+        }
+        for (Integer compacted : this.listSegments(COMPACTED).keySet()) {
+            LOGGER.info("[Storage] Finishing interrupted compaction of log storage {}.", this.name);
+            this.replaceSegments(compacted);
+        }
+
+        TreeMap<Integer, Path> files = this.listSegments(SEGMENT);
+        if (files.isEmpty()) {
+            files.put(1, this.segmentFile(1, SEGMENT));
+        }
+
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            boolean last = file.getKey().equals(files.lastKey());
+            FileChannel channel = this.open(file.getValue(), last);
+            long size = this.scan(file.getKey(), file.getValue());
+
+            if (size < channel.size()) {
+                if (!last) {
+                    throw new IOException("[Storage] Segment " + file.getValue() + " of " + this.name + " is corrupt at byte " + size + "!");
+                }
+                LOGGER.warn("[Storage] Cutting off a torn record at the end of log storage {}.", this.name);
+                channel.truncate(size);
+            }
+
+            this.segments.put(file.getKey(), channel);
+            this.totalBytes += size;
+            if (last) {
+                this.activeId = file.getKey();
+                this.active = channel;
+                this.activeSize = size;
+            }
+        }
+    }
+
+    /**
+     * Index the records of a segment
+     *
+     * @return {@link Long length of the valid records}
+     */
+    private long scan(int segment, Path file) throws IOException {
+        long offset = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            int next;
+            while ((next = in.read()) != -1) {
+                line.write(next);
+                if (next != '\n') continue;
+
+                Record record;
+                try {
+                    record = this.readHeader(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                } catch (RuntimeException | IOException exception) {
+                    return offset;
+                }
+
+                int length = line.size();
+                Location previous = record.delete ? this.index.remove(record.key) : this.index.put(record.key, new Location(segment, offset, length));
+                if (previous != null) {
+                    this.garbageBytes += previous.length;
+                }
+                if (record.delete) {
+                    this.garbageBytes += length;
+                }
+
+                offset += length;
+                line.reset();
+            }
+        }
+        return offset;
+    }
+
+    private byte[] encode(UUID key, V value, Type type) {
+        StringWriter writer = new StringWriter();
+        try {
+            // Never indented, a record has to stay on one line
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("k").value(key.toString());
+            if (value == null) {
+                json.name("d").value(true);
+            } else {
+                json.name("v");
+                this.gson.toJson(value, type, json);
+            }
+            json.endObject();
+            json.flush();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        writer.write('\n');
+        return writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private V decode(String record, Type type) {
+        try (JsonReader reader = new JsonReader(new StringReader(record))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("v")) {
+                    return this.gson.fromJson(reader, type);
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Key and kind of a record, without decoding its value
+     */
+    private Record readHeader(String line) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(line))) {
+            UUID key = null;
+            boolean delete = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("k")) {
+                    key = UUID.fromString(reader.nextString());
+                } else if (field.equals("d")) {
+                    delete = reader.nextBoolean();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (key == null) {
+                throw new IOException("[Storage] Record without a key!");
+            }
+            return new Record(key, delete);
+        }
+    }
+
+    private String read(FileChannel channel, Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        this.readFully(channel, buffer, location.offset);
+        return new String(buffer.array(), 0, location.length, StandardCharsets.UTF_8);
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("[Storage] Record of " + this.name + " ends early!");
+            }
+        }
+    }
+
+    private FileChannel open(Path file, boolean writable) throws IOException {
+        if (writable) {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    private TreeMap<Integer, Path> listSegments(String suffix) throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        File[] listed = this.directory.listFiles((dir, file) -> file.endsWith(suffix));
+        if (listed == null) {
+            throw new IOException("[Storage] Unable to list " + this.directory + "!");
+        }
+        for (File file : listed) {
+            String id = file.getName().substring(0, file.getName().length() - suffix.length());
+            try {
+                files.put(Integer.parseInt(id), file.toPath());
+            } catch (NumberFormatException ignored) {
+                // Not one of ours
+            }
+        }
+        return files;
+    }
+
+    private Path segmentFile(int id, String suffix) {
+        return new File(this.directory, String.format("%08d", id) + suffix).toPath();
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException exception) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Where the latest record of a key is
+     */
+    private static class Location {
+
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Record {
+
+        private final UUID key;
+        private final boolean delete;
+
+        private Record(UUID key, boolean delete) {
+            this.key = key;
+            this.delete = delete;
+        }
+    }
+}
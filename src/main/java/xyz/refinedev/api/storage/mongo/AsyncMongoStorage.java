@@ -0,0 +1,340 @@
+package xyz.refinedev.api.storage.mongo;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Updates;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWrapper;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import xyz.refinedev.api.storage.mongo.cache.StorageCache;
+import xyz.refinedev.api.storage.mongo.codec.GsonCodec;
+import xyz.refinedev.api.storage.mongo.write.KeyedSerialExecutor;
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Lightweight {@link KeyedStorage} for callers that only need loads and saves by key.
+ * Every operation, including decoding, runs on the storage executor, see {@link StorageExecutors},
+ * so how many run at once is bounded by that executor instead of one thread per request.
+ * <p>
+ * Writes of the same key are sent one after another in the order they were made.
+ * Write-behind, dirty tracking and the journal are only available in {@link MongoStorage}.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@SuppressWarnings("unused")
+public class AsyncMongoStorage<V> implements KeyedStorage<V> {
+
+    private static final ReplaceOptions REPLACE_OPTIONS = new ReplaceOptions().upsert(true);
+    private static final int LOAD_CHUNK_SIZE = 250;
+
+    private final MongoCollection<Document> collection;
+    private final MongoCollection<BsonDocument> bsonCollection;
+    private final Gson gson;
+    private final Type typeToken;
+    private final Executor executor;
+    /**
+     * Runs the writes of each key one after another
+     */
+    private final KeyedSerialExecutor writer;
+
+    private final Map<Type, GsonCodec<V>> codecs = new ConcurrentHashMap<>();
+    private boolean bsonCodec;
+    private KeyFormat keyFormat = KeyFormat.STRING;
+    private StorageCache<V> cache;
+
+    public AsyncMongoStorage(MongoCollection<Document> collection, Gson gson) {
+        this(collection, gson, StorageExecutors.getDefault());
+    }
+
+    /**
+     * Create a storage that runs its operations on the given executor
+     *
+     * @param collection {@link MongoCollection collection}
+     * @param gson       {@link Gson gson instance}
+     * @param executor   {@link Executor executor for blocking I/O and decoding}
+     */
+    public AsyncMongoStorage(MongoCollection<Document> collection, Gson gson, Executor executor) {
+        this.collection = collection;
+        this.bsonCollection = collection.withDocumentClass(BsonDocument.class);
+        this.gson = gson;
+        this.typeToken = new TypeToken<V>() {}.getType();
+        this.executor = executor;
+        this.writer = new KeyedSerialExecutor(executor);
+    }
+
+    /**
+     * See {@link MongoStorage#enableBsonCodec()}
+     *
+     * @return {@link AsyncMongoStorage this storage}
+     */
+    public AsyncMongoStorage<V> enableBsonCodec() {
+        this.bsonCodec = true;
+        return this;
+    }
+
+    /**
+     * See {@link MongoStorage#withKeyFormat(KeyFormat)}
+     *
+     * @param keyFormat {@link KeyFormat key format}
+     * @return          {@link AsyncMongoStorage this storage}
+     */
+    public AsyncMongoStorage<V> withKeyFormat(KeyFormat keyFormat) {
+        this.keyFormat = keyFormat;
+        return this;
+    }
+
+    public AsyncMongoStorage<V> enableCache(long maximumSize, long expireAfterAccess, TimeUnit unit) {
+        return this.enableCache(new StorageCache<>(maximumSize, expireAfterAccess, unit));
+    }
+
+    public AsyncMongoStorage<V> enableCache(StorageCache<V> cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public CacheStats getCacheStats() {
+        return this.cache == null ? null : this.cache.getStats();
+    }
+
+    @Override
+    public void invalidate(UUID key) {
+        if (this.cache != null) {
+            this.cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing runs in the background, the client and executor are owned by the caller
+    }
+
+    @Override
+    public CompletableFuture<List<V>> fetchAllEntries() {
+        return this.fetchAllEntries(this.typeToken);
+    }
+
+    public CompletableFuture<List<V>> fetchAllEntries(Type type) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (this.bsonCodec) {
+                GsonCodec<V> codec = this.codec(type);
+                return this.decodeAll(this.collection.find(RawBsonDocument.class).into(new ArrayList<>()), document -> document.decode(codec));
+            }
+            return this.decodeAll(this.collection.find().into(new ArrayList<>()), document -> this.gson.fromJson(document.toJson(), type));
+        }, this.executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> fetchAllRawEntries() {
+        return CompletableFuture.supplyAsync(() -> this.collection.find().into(new ArrayList<>()), this.executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveData(UUID key, V value, Type type) {
+        if (this.cache != null) {
+            this.cache.put(key, value);
+        }
+        return this.writer.submit(key, () -> this.bsonCollection.replaceOne(this.keyFormat.writeFilter(key), this.encode(value, type), REPLACE_OPTIONS), true);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveRawData(UUID key, Document document) {
+        this.invalidate(key);
+        return this.writer.submit(key, () -> this.collection.replaceOne(this.keyFormat.writeFilter(key), document, REPLACE_OPTIONS), true);
+    }
+
+    @Override
+    public CompletableFuture<V> loadDataAsync(UUID key, Type type) {
+        if (this.cache == null) {
+            return this.fetchData(key, type);
+        }
+
+        V cached = this.cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        long stamp = this.cache.stamp(key);
+        return this.fetchData(key, type).thenApply(value -> {
+            if (value != null) {
+                this.cache.putIfUnchanged(key, value, stamp);
+            }
+            return value;
+        });
+    }
+
+    private CompletableFuture<V> fetchData(UUID key, Type type) {
+        return CompletableFuture.supplyAsync(() -> {
+            Bson query = this.keyFormat.readFilter(key);
+            if (this.bsonCodec) {
+                RawBsonDocument document = this.first(this.collection.find(query, RawBsonDocument.class).into(new ArrayList<>()));
+                return document == null ? null : document.decode(this.codec(type));
+            }
+            Document document = this.first(this.collection.find(query).into(new ArrayList<>()));
+            return document == null ? null : this.gson.fromJson(document.toJson(), type);
+        }, this.executor);
+    }
+
+    @Override
+    public CompletableFuture<Document> loadRawDataAsync(UUID key) {
+        Bson query = this.keyFormat.readFilter(key);
+        return CompletableFuture.supplyAsync(() -> this.first(this.collection.find(query).into(new ArrayList<>())), this.executor);
+    }
+
+    @Override
+    public CompletableFuture<LoadResult<V>> loadAllAsync(Collection<UUID> keys, Type type) {
+        return this.loadAllAsync(keys, type, LOAD_CHUNK_SIZE);
+    }
+
+    /**
+     * See {@link MongoStorage#loadAllAsync(Collection, Type, int)}
+     *
+     * @param keys      {@link Collection keys to load}
+     * @param type      {@link Type type of the values}
+     * @param chunkSize {@link Integer keys per query}
+     * @return          {@link LoadResult found values and missing keys}
+     */
+    public CompletableFuture<LoadResult<V>> loadAllAsync(Collection<UUID> keys, Type type, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "[Storage] Chunk size must be positive!");
+
+        Set<UUID> requested = new LinkedHashSet<>(keys);
+        Map<UUID, V> found = new HashMap<>();
+        List<UUID> remaining = new ArrayList<>();
+
+        for (UUID key : requested) {
+            V cached = this.cache == null ? null : this.cache.get(key);
+            if (cached != null) {
+                found.put(key, cached);
+            } else {
+                remaining.add(key);
+            }
+        }
+
+        List<CompletableFuture<Map<UUID, V>>> chunks = new ArrayList<>();
+        for (int i = 0; i < remaining.size(); i += chunkSize) {
+            chunks.add(this.fetchChunk(remaining.subList(i, Math.min(i + chunkSize, remaining.size())), type));
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            chunks.forEach(chunk -> found.putAll(chunk.join()));
+
+            Set<UUID> missing = new HashSet<>(requested);
+            missing.removeAll(found.keySet());
+            return new LoadResult<>(found, missing);
+        });
+    }
+
+    private CompletableFuture<Map<UUID, V>> fetchChunk(List<UUID> keys, Type type) {
+        Map<UUID, Long> stamps = new HashMap<>();
+        if (this.cache != null) {
+            keys.forEach(key -> stamps.put(key, this.cache.stamp(key)));
+        }
+
+        Bson query = this.keyFormat.readFilter(keys);
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, V> found;
+            if (this.bsonCodec) {
+                GsonCodec<V> codec = this.codec(type);
+                found = this.decodeChunk(this.collection.find(query, RawBsonDocument.class).into(new ArrayList<>()), document -> document.decode(codec));
+            } else {
+                found = this.decodeChunk(this.collection.find(query).into(new ArrayList<>()), document -> this.gson.fromJson(document.toJson(), type));
+            }
+
+            if (this.cache != null) {
+                found.forEach((key, value) -> this.cache.putIfUnchanged(key, value, stamps.get(key)));
+            }
+            return found;
+        }, this.executor);
+    }
+
+    private <T extends Map<String, ?>> Map<UUID, V> decodeChunk(List<T> documents, Function<T, V> decoder) {
+        Map<UUID, V> found = new HashMap<>();
+        for (T document : documents) {
+            Object id = document.get("_id");
+            UUID key = KeyFormat.fromId(id);
+            if (key == null || found.containsKey(key) && !KeyFormat.isBinary(id)) continue;
+
+            found.put(key, decoder.apply(document));
+        }
+        return found;
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteData(UUID key) {
+        this.invalidate(key);
+        // Many, as a key can have a document in both formats while migrating
+        return this.writer.submit(key, () -> this.collection.deleteMany(this.keyFormat.readFilter(key)), true);
+    }
+
+    @Override
+    public CompletableFuture<Long> deleteKeyInAll(String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            long modified = this.collection.updateMany(new Document(), Updates.unset(key)).getModifiedCount();
+            if (this.cache != null) {
+                this.cache.invalidateAll();
+            }
+            return modified;
+        }, this.executor);
+    }
+
+    /**
+     * First document of a key lookup, the binary keyed one while migrating keys
+     */
+    private <T extends Map<String, ?>> T first(List<T> documents) {
+        T found = null;
+        for (T document : documents) {
+            if (found == null || KeyFormat.isBinary(document.get("_id"))) {
+                found = document;
+            }
+        }
+        return found;
+    }
+
+    private <T> List<V> decodeAll(List<T> documents, Function<T, V> decoder) {
+        List<V> values = new ArrayList<>(documents.size());
+        for (T document : documents) {
+            values.add(decoder.apply(document));
+        }
+        return values;
+    }
+
+    private BsonDocument encode(V value, Type type) {
+        if (this.bsonCodec) {
+            return new RawBsonDocument(value, this.codec(type));
+        }
+        return BsonDocumentWrapper.asBsonDocument(Document.parse(this.gson.toJson(value, type)), this.collection.getCodecRegistry());
+    }
+
+    private GsonCodec<V> codec(Type type) {
+        return this.codecs.computeIfAbsent(type, t -> new GsonCodec<>(this.gson, t));
+    }
+}
@@ -0,0 +1,402 @@
+package xyz.refinedev.api.storage.mongo;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+import xyz.refinedev.api.storage.mongo.write.DirtyTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Changes every document of a collection in small batches instead of one big {@code updateMany}.
+ * Documents are walked in {@code _id} order, changed on the client by the renames, unsets and
+ * transforms of this migration, and only the changed paths are written back with a bulk write.
+ * <p>
+ * Progress is checkpointed in a metadata document named after the migration, so a migration
+ * that was paused or interrupted continues after the last finished batch when run again,
+ * and a finished one does nothing. Use a new name for every new migration.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class CollectionMigration {
+
+    private static final Logger LOGGER = LogManager.getLogger(CollectionMigration.class);
+    private static final BulkWriteOptions BULK_OPTIONS = new BulkWriteOptions().ordered(false);
+    private static final ReplaceOptions CHECKPOINT_OPTIONS = new ReplaceOptions().upsert(true);
+    /**
+     * Every type an {@code _id} can have. Range queries only match values
+     * of the same type, so each type is walked on its own.
+     */
+    private static final BsonType[] ID_TYPES = {
+            BsonType.INT32, BsonType.INT64, BsonType.DOUBLE, BsonType.DECIMAL128, BsonType.STRING,
+            BsonType.DOCUMENT, BsonType.BINARY, BsonType.OBJECT_ID, BsonType.BOOLEAN,
+            BsonType.DATE_TIME, BsonType.TIMESTAMP
+    };
+
+    private final MongoCollection<BsonDocument> collection;
+    private final MongoCollection<BsonDocument> metadata;
+    private final String name;
+
+    private final List<UnaryOperator<BsonDocument>> steps = new ArrayList<>();
+    private int batchSize = 500;
+    private RateLimiter rateLimiter;
+    private Consumer<BsonValue> listener;
+
+    private volatile boolean paused;
+    private volatile long processed;
+    private volatile long modified;
+    private volatile long elapsed;
+
+    /**
+     * Create a migration for the given collection
+     *
+     * @param collection {@link MongoCollection collection to migrate}
+     * @param metadata   {@link MongoCollection collection the checkpoint is kept in}
+     * @param name       {@link String unique name of the migration}
+     */
+    public CollectionMigration(MongoCollection<?> collection, MongoCollection<?> metadata, String name) {
+        this.collection = collection.withDocumentClass(BsonDocument.class);
+        this.metadata = metadata.withDocumentClass(BsonDocument.class);
+        this.name = name;
+    }
+
+    /**
+     * Move a field, like {@code $rename}. Both may be dotted paths into embedded documents,
+     * missing documents on the way to {@code to} are created.
+     *
+     * @param from {@link String path of the field}
+     * @param to   {@link String new path of the field}
+     * @return     {@link CollectionMigration this migration}
+     */
+    public CollectionMigration rename(String from, String to) {
+        checkPath(from);
+        checkPath(to);
+        Preconditions.checkArgument(!from.equals(to) && !to.startsWith(from + ".") && !from.startsWith(to + "."), "[Storage] Can't rename " + from + " to " + to + ", the paths overlap!");
+        return this.transform(document -> {
+            BsonValue value = removePath(document, from);
+            if (value != null) {
+                putPath(document, to, value);
+            }
+            return document;
+        });
+    }
+
+    /**
+     * Remove a field, like {@code $unset}. It may be a dotted path into embedded documents.
+     *
+     * @param field {@link String path of the field}
+     * @return      {@link CollectionMigration this migration}
+     */
+    public CollectionMigration unset(String field) {
+        checkPath(field);
+        return this.transform(document -> {
+            removePath(document, field);
+            return document;
+        });
+    }
+
+    private static void checkPath(String path) {
+        Preconditions.checkArgument(!path.equals("_id") && !path.startsWith("_id."), "[Storage] Can't change _id!");
+        Preconditions.checkArgument(!path.isEmpty() && !path.startsWith(".") && !path.endsWith(".") && !path.contains(".."), "[Storage] Invalid field path " + path + "!");
+    }
+
+    private static BsonValue removePath(BsonDocument document, String path) {
+        int dot = path.lastIndexOf('.');
+        BsonDocument parent = document;
+        if (dot != -1) {
+            for (String name : path.substring(0, dot).split("\\.")) {
+                BsonValue child = parent.get(name);
+                if (child == null || !child.isDocument()) {
+                    return null;
+                }
+                parent = child.asDocument();
+            }
+        }
+        return parent.remove(path.substring(dot + 1));
+    }
+
+    private static void putPath(BsonDocument document, String path, BsonValue value) {
+        int dot = path.lastIndexOf('.');
+        BsonDocument parent = document;
+        if (dot != -1) {
+            for (String name : path.substring(0, dot).split("\\.")) {
+                BsonValue child = parent.get(name);
+                if (child == null) {
+                    child = new BsonDocument();
+                    parent.put(name, child);
+                } else if (!child.isDocument()) {
+                    // $rename fails the same way
+                    throw new IllegalStateException("[Storage] Can't move a field to " + path + " of " + document.get("_id") + ", " + name + " is not a document!");
+                }
+                parent = child.asDocument();
+            }
+        }
+        parent.put(path.substring(dot + 1), value);
+    }
+
+    /**
+     * Change documents with a function, it gets a copy of the document
+     * and may change it in place or return a new one. The {@code _id} can't be changed.
+     *
+     * @param transform {@link UnaryOperator transform}
+     * @return          {@link CollectionMigration this migration}
+     */
+    public CollectionMigration transform(UnaryOperator<BsonDocument> transform) {
+        this.steps.add(transform);
+        return this;
+    }
+
+    public CollectionMigration batchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "[Storage] Batch size must be positive!");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Limit how many documents are read and written per second
+     *
+     * @param documentsPerSecond {@link Double documents per second}
+     * @return                   {@link CollectionMigration this migration}
+     */
+    public CollectionMigration rateLimit(double documentsPerSecond) {
+        this.rateLimiter = RateLimiter.create(documentsPerSecond);
+        return this;
+    }
+
+    /**
+     * Called with the id of every document the migration changed, for example to drop it from a cache
+     *
+     * @param listener {@link Consumer listener}
+     * @return         {@link CollectionMigration this migration}
+     */
+    public CollectionMigration onChange(Consumer<BsonValue> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Run the migration until it is finished or paused
+     *
+     * @return {@link Boolean whether the migration is finished}
+     */
+    public synchronized boolean run() {
+        Preconditions.checkState(!this.steps.isEmpty(), "[Storage] Migration has nothing to do!");
+        this.paused = false;
+
+        BsonDocument checkpoint = this.metadata.find(Filters.eq("_id", this.checkpointId())).first();
+        if (checkpoint != null && checkpoint.getBoolean("completed", BsonBoolean.FALSE).getValue()) {
+            LOGGER.info("[Storage] Migration {} of {} has already been completed.", this.name, this.collection.getNamespace());
+            return true;
+        }
+
+        int typeIndex = 0;
+        BsonValue lastId = null;
+        if (checkpoint != null) {
+            typeIndex = checkpoint.getInt32("typeIndex").getValue();
+            lastId = checkpoint.get("lastId");
+            this.processed = checkpoint.getNumber("processed").longValue();
+            this.modified = checkpoint.getNumber("modified").longValue();
+            LOGGER.info("[Storage] Resuming migration {} of {} after {} documents.", this.name, this.collection.getNamespace(), this.processed);
+        }
+
+        for (; typeIndex < ID_TYPES.length; typeIndex++, lastId = null) {
+            while (true) {
+                if (this.paused) {
+                    LOGGER.info("[Storage] Paused migration {} of {} after {} documents.", this.name, this.collection.getNamespace(), this.processed);
+                    return false;
+                }
+
+                long start = System.nanoTime();
+                Bson filter = Filters.type("_id", ID_TYPES[typeIndex]);
+                if (lastId != null) {
+                    filter = Filters.and(filter, Filters.gt("_id", lastId));
+                }
+
+                if (this.rateLimiter != null) {
+                    this.rateLimiter.acquire(this.batchSize);
+                }
+                List<BsonDocument> documents = this.collection.find(filter).sort(Sorts.ascending("_id")).limit(this.batchSize).into(new ArrayList<>());
+                if (documents.isEmpty()) {
+                    break;
+                }
+
+                this.migrateBatch(documents);
+                lastId = documents.get(documents.size() - 1).get("_id");
+                this.elapsed += System.nanoTime() - start;
+                this.saveCheckpoint(typeIndex, lastId, false);
+
+                LOGGER.info("[Storage] Migration {} of {}: {} documents, {} changed, {} documents/s.",
+                        this.name, this.collection.getNamespace(), this.processed, this.modified, Math.round(this.getThroughput()));
+            }
+        }
+
+        this.saveCheckpoint(ID_TYPES.length, null, true);
+        LOGGER.info("[Storage] Completed migration {} of {}, {} of {} documents changed.", this.name, this.collection.getNamespace(), this.modified, this.processed);
+        return true;
+    }
+
+    public CompletableFuture<Boolean> runAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(this::run, executor);
+    }
+
+    /**
+     * Stop the running migration after the current batch, run it again to continue
+     */
+    public void pause() {
+        this.paused = true;
+    }
+
+    /**
+     * Forget the checkpoint, the next run starts from the beginning
+     */
+    public synchronized void reset() {
+        this.metadata.deleteOne(Filters.eq("_id", this.checkpointId()));
+        this.processed = 0;
+        this.modified = 0;
+        this.elapsed = 0;
+    }
+
+    public long getProcessed() {
+        return this.processed;
+    }
+
+    public long getModified() {
+        return this.modified;
+    }
+
+    /**
+     * Documents walked per second while this instance was running, including throttling
+     *
+     * @return {@link Double documents per second}
+     */
+    public double getThroughput() {
+        long elapsed = this.elapsed;
+        if (elapsed == 0) {
+            return 0;
+        }
+        return this.processed / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void migrateBatch(List<BsonDocument> documents) {
+        List<WriteModel<BsonDocument>> models = new ArrayList<>();
+        List<BsonValue> changed = new ArrayList<>();
+
+        for (BsonDocument document : documents) {
+            BsonValue id = document.get("_id");
+            BsonDocument migrated = document.clone();
+            for (UnaryOperator<BsonDocument> step : this.steps) {
+                migrated = step.apply(migrated);
+            }
+            Preconditions.checkState(id.equals(migrated.get("_id")), "[Storage] Migration %s changed the _id of %s!", this.name, id);
+
+            BsonDocument update = DirtyTracker.diff(document, migrated, Double.MAX_VALUE);
+            if (update == null) {
+                // A changed name deeper down can't be written as a path, set its top-level field as a whole
+                update = topLevelUpdate(document, migrated);
+                if (update == null) {
+                    LOGGER.warn("[Storage] Migration {} skipped {} in {}, a changed top-level field name can't be written as a path.", this.name, id, this.collection.getNamespace());
+                    continue;
+                }
+            }
+            if (update.isEmpty()) continue;
+
+            // Only the changed fields, so concurrent writes to other fields are kept
+            models.add(new UpdateOneModel<>(Filters.eq("_id", id), update));
+            changed.add(id);
+        }
+
+        if (!models.isEmpty()) {
+            this.collection.bulkWrite(models, BULK_OPTIONS);
+            if (this.listener != null) {
+                changed.forEach(this.listener);
+            }
+        }
+        this.processed += documents.size();
+        this.modified += models.size();
+    }
+
+    /**
+     * Set every changed top-level field as a whole and unset the removed ones
+     *
+     * @return {@link BsonDocument the update, null if a changed top-level name can't be used as a path}
+     */
+    private static BsonDocument topLevelUpdate(BsonDocument previous, BsonDocument current) {
+        BsonDocument set = new BsonDocument();
+        BsonDocument unset = new BsonDocument();
+        for (String name : current.keySet()) {
+            if (name.equals("_id") || current.get(name).equals(previous.get(name))) continue;
+            if (!isPathSafe(name)) return null;
+
+            set.put(name, current.get(name));
+        }
+        for (String name : previous.keySet()) {
+            if (current.containsKey(name)) continue;
+            if (!isPathSafe(name)) return null;
+
+            unset.put(name, new BsonString(""));
+        }
+
+        BsonDocument update = new BsonDocument();
+        if (!set.isEmpty()) {
+            update.put("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.put("$unset", unset);
+        }
+        return update;
+    }
+
+    private static boolean isPathSafe(String name) {
+        return !name.isEmpty() && name.indexOf('.') == -1 && name.charAt(0) != '$';
+    }
+
+    private void saveCheckpoint(int typeIndex, BsonValue lastId, boolean completed) {
+        BsonDocument checkpoint = new BsonDocument("_id", new BsonString(this.checkpointId()))
+                .append("typeIndex", new BsonInt32(typeIndex))
+                .append("processed", new BsonInt64(this.processed))
+                .append("modified", new BsonInt64(this.modified))
+                .append("completed", BsonBoolean.valueOf(completed))
+                .append("updatedAt", new BsonDateTime(System.currentTimeMillis()));
+        if (lastId != null) {
+            // Kept as is, so it comes back with its exact BSON type
+            checkpoint.append("lastId", lastId);
+        }
+        this.metadata.replaceOne(Filters.eq("_id", this.checkpointId()), checkpoint, CHECKPOINT_OPTIONS);
+    }
+
+    private String checkpointId() {
+        return "migration:" + this.collection.getNamespace().getFullName() + ":" + this.name;
+    }
+}
@@ -0,0 +1,117 @@
+package xyz.refinedev.api.storage.mongo;
+
+import com.google.common.base.Preconditions;
+
+import com.mongodb.client.model.Updates;
+
+import lombok.Getter;
+
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Atomic changes to single fields of one key, sent as one {@code updateOne} with upsert
+ * instead of loading, changing and saving the whole value. A key without a document
+ * gets one with only the changed fields.
+ * <p>
+ * Values are encoded by the collection's codecs, so they have to be plain BSON values
+ * (numbers, strings, lists, {@link org.bson.Document}s), not the storage's value type.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class FieldUpdate {
+
+    private final MongoStorage<?> storage;
+    @Getter private final UUID key;
+    private final List<Bson> operations = new ArrayList<>();
+
+    FieldUpdate(MongoStorage<?> storage, UUID key) {
+        this.storage = storage;
+        this.key = key;
+    }
+
+    public FieldUpdate inc(String path, Number amount) {
+        return this.add(Updates.inc(path, amount));
+    }
+
+    public FieldUpdate set(String path, Object value) {
+        return this.add(Updates.set(path, value));
+    }
+
+    public FieldUpdate unset(String path) {
+        return this.add(Updates.unset(path));
+    }
+
+    /**
+     * Append a value to the array at the path, creating the array if needed
+     *
+     * @param path  {@link String path of the array}
+     * @param value {@link Object value to append}
+     * @return      {@link FieldUpdate this update}
+     */
+    public FieldUpdate push(String path, Object value) {
+        return this.add(Updates.push(path, value));
+    }
+
+    /**
+     * Remove every occurrence of a value from the array at the path
+     *
+     * @param path  {@link String path of the array}
+     * @param value {@link Object value to remove}
+     * @return      {@link FieldUpdate this update}
+     */
+    public FieldUpdate pull(String path, Object value) {
+        return this.add(Updates.pull(path, value));
+    }
+
+    /**
+     * Set the field to the value if it is lower than the stored one, or if there is none
+     *
+     * @param path  {@link String path}
+     * @param value {@link Object value}
+     * @return      {@link FieldUpdate this update}
+     */
+    public FieldUpdate min(String path, Object value) {
+        return this.add(Updates.min(path, value));
+    }
+
+    public FieldUpdate max(String path, Object value) {
+        return this.add(Updates.max(path, value));
+    }
+
+    public FieldUpdate add(Bson operation) {
+        this.operations.add(operation);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return this.operations.isEmpty();
+    }
+
+    public Bson toUpdate() {
+        Preconditions.checkState(!this.operations.isEmpty(), "[Storage] Field update has no operations!");
+        return this.operations.size() == 1 ? this.operations.get(0) : Updates.combine(this.operations);
+    }
+
+    /**
+     * Send the update, after any earlier asynchronous write of this key
+     *
+     * @return {@link CompletableFuture completed once the update was acknowledged}
+     */
+    public CompletableFuture<Void> apply() {
+        return this.storage.applyUpdate(this);
+    }
+
+    public void applySync() {
+        this.storage.applyUpdateSync(this);
+    }
+}
@@ -0,0 +1,146 @@
+package xyz.refinedev.api.storage.mongo;
+
+import com.mongodb.client.model.Filters;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * How a {@link MongoStorage} stores its {@link UUID} keys in {@code _id}.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public enum KeyFormat {
+
+    /**
+     * 36 character string, the format every storage used so far
+     */
+    STRING,
+    /**
+     * 16 byte binary of the standard UUID subtype (4)
+     */
+    BINARY,
+    /**
+     * Writes binary keys, reads both formats and prefers the binary document.
+     * Used while {@link KeyMigration} rewrites the string keyed documents.
+     */
+    MIGRATING;
+
+    /**
+     * The {@code _id} value a document of this key is written with
+     *
+     * @param key {@link UUID key}
+     * @return    {@link BsonValue id}
+     */
+    public BsonValue toId(UUID key) {
+        return this == STRING ? new BsonString(key.toString()) : toBinary(key);
+    }
+
+    /**
+     * Filter matching the document a write of this key targets
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Bson filter}
+     */
+    public Bson writeFilter(UUID key) {
+        return Filters.eq("_id", this.toId(key));
+    }
+
+    /**
+     * Filter matching every document this key could be stored as
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Bson filter}
+     */
+    public Bson readFilter(UUID key) {
+        if (this != MIGRATING) {
+            return this.writeFilter(key);
+        }
+        return Filters.in("_id", toBinary(key), new BsonString(key.toString()));
+    }
+
+    /**
+     * Filter matching every document these keys could be stored as
+     *
+     * @param keys {@link Collection keys}
+     * @return     {@link Bson filter}
+     */
+    public Bson readFilter(Collection<UUID> keys) {
+        List<BsonValue> ids = new ArrayList<>(this == MIGRATING ? keys.size() * 2 : keys.size());
+        for (UUID key : keys) {
+            ids.add(this.toId(key));
+            if (this == MIGRATING) {
+                ids.add(new BsonString(key.toString()));
+            }
+        }
+        return Filters.in("_id", ids);
+    }
+
+    public static BsonBinary toBinary(UUID key) {
+        byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(key.getMostSignificantBits())
+                .putLong(key.getLeastSignificantBits())
+                .array();
+        return new BsonBinary(BsonBinarySubType.UUID_STANDARD, bytes);
+    }
+
+    /**
+     * Read the key back from an {@code _id}, in any of the supported formats
+     *
+     * @param id {@link Object id as found in a Document or BsonDocument}
+     * @return   {@link UUID key, null if the id is not a UUID}
+     */
+    public static UUID fromId(Object id) {
+        if (id instanceof UUID) {
+            return (UUID) id;
+        }
+        if (id instanceof BsonString) {
+            id = ((BsonString) id).getValue();
+        }
+        if (id instanceof String) {
+            try {
+                return UUID.fromString((String) id);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        byte[] data = null;
+        if (id instanceof BsonBinary && ((BsonBinary) id).getType() == BsonBinarySubType.UUID_STANDARD.getValue()) {
+            data = ((BsonBinary) id).getData();
+        } else if (id instanceof Binary && ((Binary) id).getType() == BsonBinarySubType.UUID_STANDARD.getValue()) {
+            data = ((Binary) id).getData();
+        }
+
+        if (data == null || data.length != 16) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Whether an {@code _id} is in the binary format
+     *
+     * @param id {@link Object id as found in a Document or BsonDocument}
+     * @return   {@link Boolean binary}
+     */
+    public static boolean isBinary(Object id) {
+        return id instanceof UUID || id instanceof BsonBinary || id instanceof Binary;
+    }
+}
@@ -0,0 +1,220 @@
+package xyz.refinedev.api.storage.mongo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.result.UpdateResult;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Rewrites string keyed documents to binary UUID keys, one batch at a time.
+ * Every batch inserts the binary copies and then deletes the string originals,
+ * so the remaining work is always "all string keyed documents" and an
+ * interrupted migration simply continues where it stopped when run again.
+ * An original is only deleted while it still equals what was copied, one that was
+ * written to in between is copied again.
+ * <p>
+ * A binary document that already exists is never overwritten, it was written
+ * by a storage in {@link KeyFormat#MIGRATING} mode and is newer than the string one.
+ * Every node has to be in that mode before the migration starts.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class KeyMigration {
+
+    private static final Logger LOGGER = LogManager.getLogger(KeyMigration.class);
+    private static final BulkWriteOptions BULK_OPTIONS = new BulkWriteOptions().ordered(false);
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int RETRIES = 5;
+
+    private final MongoCollection<BsonDocument> collection;
+    /**
+     * Last string id of the previous batch, ids that can't be migrated are skipped by it
+     */
+    private BsonValue lastId;
+    private long migrated;
+
+    public KeyMigration(MongoCollection<?> collection) {
+        this.collection = collection.withDocumentClass(BsonDocument.class);
+    }
+
+    /**
+     * Migrate every string keyed document
+     *
+     * @param batchSize {@link Integer documents per batch}
+     * @return          {@link Long amount of migrated documents}
+     */
+    public long run(int batchSize) {
+        long before = this.migrated;
+        while (this.migrateBatch(batchSize) > 0) {
+            LOGGER.info("[Storage] Migrated {} keys of {} so far.", this.migrated, this.collection.getNamespace());
+        }
+        return this.migrated - before;
+    }
+
+    public CompletableFuture<Long> runAsync(int batchSize, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> this.run(batchSize), executor);
+    }
+
+    /**
+     * Migrate the next batch of string keyed documents
+     *
+     * @param batchSize {@link Integer maximum documents in this batch}
+     * @return          {@link Integer documents looked at, 0 once nothing is left}
+     */
+    public synchronized int migrateBatch(int batchSize) {
+        Bson filter = Filters.type("_id", BsonType.STRING);
+        if (this.lastId != null) {
+            filter = Filters.and(filter, Filters.gt("_id", this.lastId));
+        }
+
+        List<BsonDocument> documents = this.collection.find(filter).sort(Sorts.ascending("_id")).limit(batchSize).into(new ArrayList<>());
+        if (documents.isEmpty()) {
+            return 0;
+        }
+
+        List<InsertOneModel<BsonDocument>> inserts = new ArrayList<>(documents.size());
+        List<BsonDocument> originals = new ArrayList<>(documents.size());
+        for (BsonDocument document : documents) {
+            BsonValue id = document.get("_id");
+            this.lastId = id;
+
+            UUID key = KeyFormat.fromId(id);
+            if (key == null) {
+                LOGGER.error("[Storage] Skipping document {} of {}, its id is not a UUID.", id, this.collection.getNamespace());
+                continue;
+            }
+
+            inserts.add(new InsertOneModel<>(copy(document, key)));
+            originals.add(document);
+        }
+
+        if (!inserts.isEmpty()) {
+            Set<Integer> failed = new HashSet<>();
+            Set<Integer> duplicates = new HashSet<>();
+            try {
+                this.collection.bulkWrite(inserts, BULK_OPTIONS);
+            } catch (MongoBulkWriteException e) {
+                if (e.getWriteConcernError() != null) {
+                    throw e;
+                }
+
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    // A duplicate means the binary document exists already, the original can go
+                    if (error.getCode() == DUPLICATE_KEY) {
+                        duplicates.add(error.getIndex());
+                    } else {
+                        failed.add(error.getIndex());
+                        LOGGER.error("[Storage] Unable to migrate {} of {}: {}", originals.get(error.getIndex()).get("_id"), this.collection.getNamespace(), error.getMessage());
+                    }
+                }
+            }
+
+            for (int i = 0; i < originals.size(); i++) {
+                if (failed.contains(i)) continue;
+
+                // One at a time, a bulk delete can't tell which originals were written to in between
+                BsonDocument original = originals.get(i);
+                if (this.collection.deleteOne(unchanged(original)).getDeletedCount() > 0
+                        || this.recopy(original.get("_id"), duplicates.contains(i) ? null : inserts.get(i).getDocument())) {
+                    this.migrated++;
+                }
+            }
+        }
+        return documents.size();
+    }
+
+    /**
+     * Copy a string keyed document again after it changed, and delete it once it stayed unchanged
+     *
+     * @param id     {@link BsonValue string id of the original}
+     * @param copied {@link BsonDocument binary copy this migration inserted, null if the binary document was there before}
+     * @return       {@link Boolean whether the original is gone}
+     */
+    private boolean recopy(BsonValue id, BsonDocument copied) {
+        UUID key = KeyFormat.fromId(id);
+        for (int attempt = 0; attempt < RETRIES; attempt++) {
+            BsonDocument original = this.collection.find(Filters.eq("_id", id)).first();
+            if (original == null) {
+                // Deleted in between, don't let our copy bring it back
+                if (copied != null) {
+                    this.collection.deleteOne(unchanged(copied));
+                }
+                return true;
+            }
+
+            if (copied != null) {
+                BsonDocument copy = copy(original, key);
+                UpdateResult result = this.collection.replaceOne(unchanged(copied), copy);
+                // Otherwise the binary document was written to since, which makes it newer than the original
+                copied = result.getMatchedCount() > 0 ? copy : null;
+            }
+
+            if (this.collection.deleteOne(unchanged(original)).getDeletedCount() > 0) {
+                return true;
+            }
+        }
+
+        LOGGER.error("[Storage] Unable to migrate {} of {}, it keeps changing. Run the migration again later.", id, this.collection.getNamespace());
+        return false;
+    }
+
+    private static BsonDocument copy(BsonDocument document, UUID key) {
+        BsonDocument copy = new BsonDocument("_id", KeyFormat.toBinary(key));
+        for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+            if (!entry.getKey().equals("_id")) {
+                copy.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Filter matching the document only while it is exactly the given one
+     */
+    private static Bson unchanged(BsonDocument document) {
+        BsonDocument literal = new BsonDocument("$literal", document);
+        return Filters.and(Filters.eq("_id", document.get("_id")), Filters.expr(new BsonDocument("$eq", new BsonArray(Arrays.asList(new BsonString("$$ROOT"), literal)))));
+    }
+
+    /**
+     * Amount of documents that still have a string key
+     *
+     * @return {@link Long remaining documents}
+     */
+    public long countRemaining() {
+        return this.collection.countDocuments(Filters.type("_id", BsonType.STRING));
+    }
+
+    public synchronized long getMigrated() {
+        return this.migrated;
+    }
+}
@@ -0,0 +1,53 @@
+package xyz.refinedev.api.storage.mongo;
+
+import org.bson.Document;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Asynchronous operations shared by {@link MongoStorage} and {@link AsyncMongoStorage},
+ * so code written against it works with either backend.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public interface KeyedStorage<V> {
+
+    CompletableFuture<List<V>> fetchAllEntries();
+
+    CompletableFuture<List<Document>> fetchAllRawEntries();
+
+    CompletableFuture<Void> saveData(UUID key, V value, Type type);
+
+    CompletableFuture<Void> saveRawData(UUID key, Document document);
+
+    CompletableFuture<V> loadDataAsync(UUID key, Type type);
+
+    CompletableFuture<Document> loadRawDataAsync(UUID key);
+
+    CompletableFuture<LoadResult<V>> loadAllAsync(Collection<UUID> keys, Type type);
+
+    CompletableFuture<Void> deleteData(UUID key);
+
+    CompletableFuture<Long> deleteKeyInAll(String key);
+
+    /**
+     * Drop everything this storage remembers about a key
+     *
+     * @param key {@link UUID key}
+     */
+    void invalidate(UUID key);
+
+    /**
+     * Stop background work, should be called when the plugin disables
+     */
+    void shutdown();
+}
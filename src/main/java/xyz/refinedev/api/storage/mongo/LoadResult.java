@@ -0,0 +1,34 @@
+package xyz.refinedev.api.storage.mongo;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Result of a multi-key load, keys without a document end up in {@link #getMissing()}.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@Getter
+@RequiredArgsConstructor
+public class LoadResult<V> {
+
+    private final Map<UUID, V> found;
+    private final Set<UUID> missing;
+
+    public V get(UUID key) {
+        return this.found.get(key);
+    }
+
+    public boolean isComplete() {
+        return this.missing.isEmpty();
+    }
+}
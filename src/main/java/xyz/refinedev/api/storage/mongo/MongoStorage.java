@@ -1,21 +1,81 @@
 package xyz.refinedev.api.storage.mongo;
 
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.DeleteManyModel;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
 
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.ByteBuf;
+import org.bson.BsonDocumentWrapper;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
 import org.bson.conversions.Bson;
 
+import xyz.refinedev.api.storage.mongo.cache.OffHeapCache;
+import xyz.refinedev.api.storage.mongo.cache.StorageCache;
+import xyz.refinedev.api.storage.mongo.codec.GsonCodec;
+import xyz.refinedev.api.storage.mongo.invalidation.InvalidationBus;
+import xyz.refinedev.api.storage.mongo.invalidation.InvalidationTransport;
+import xyz.refinedev.api.storage.mongo.scan.IdPartitioner;
+import xyz.refinedev.api.storage.mongo.write.DirtyTracker;
+import xyz.refinedev.api.storage.mongo.write.KeyedSerialExecutor;
+import xyz.refinedev.api.storage.mongo.write.WriteBehindQueue;
+import xyz.refinedev.api.storage.mongo.write.WriteJournal;
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This Project is property of Refine Development © 2021 - 2022
@@ -27,33 +87,531 @@ import java.util.concurrent.CompletableFuture;
  */
 
 @SuppressWarnings("unused")
-public class MongoStorage<V> {
+public class MongoStorage<V> implements KeyedStorage<V> {
 
     private static final ReplaceOptions REPLACE_OPTIONS = new ReplaceOptions().upsert(true);
+    private static final UpdateOptions UPSERT_OPTIONS = new UpdateOptions().upsert(true);
+    /**
+     * Default amount of keys per {@code $in} query of a multi-key load
+     */
+    private static final int LOAD_CHUNK_SIZE = 250;
+    /**
+     * How long a prefetched value is kept for the load it was meant for, if there is no cache
+     */
+    private static final long PREFETCH_RETENTION = 30;
 
     private final MongoCollection<Document> collection;
+    /**
+     * Same collection, used for writes so both plain and codec encoded documents can be sent
+     */
+    private final MongoCollection<BsonDocument> bsonCollection;
     private final Gson gson;
     private final Type typeToken;
+    /**
+     * Executor running every asynchronous operation of this storage
+     */
+    private final Executor executor;
+    /**
+     * Keeps asynchronous writes of the same key in order and collapses the ones waiting
+     */
+    private final KeyedSerialExecutor writer;
+
+    private final Map<Type, GsonCodec<V>> codecs = new ConcurrentHashMap<>();
+    /**
+     * Loads that are running, concurrent loads of the same key share them
+     */
+    private final Map<UUID, Flight<V>> loads = new ConcurrentHashMap<>();
+    /**
+     * Finished prefetches, only used when there is no cache to put them in
+     */
+    private final Cache<UUID, Flight<V>> prefetched = CacheBuilder.newBuilder().expireAfterWrite(PREFETCH_RETENTION, TimeUnit.SECONDS).build();
+    private boolean bsonCodec;
+    private KeyFormat keyFormat = KeyFormat.STRING;
+
+    /**
+     * Write-behind queue, only present when enabled through {@link #enableWriteBehind}
+     */
+    private WriteBehindQueue<BsonDocument> writeBehind;
+    /**
+     * On-disk journal writes are acknowledged by, only present when enabled through {@link #enableJournal}
+     */
+    private WriteJournal journal;
+    /**
+     * Read-through cache, only present when enabled through {@link #enableCache}
+     */
+    private StorageCache<V> cache;
+    /**
+     * Second level cache of encoded documents, only present when enabled through {@link #enableOffHeapCache}
+     */
+    private OffHeapCache offHeapCache;
+    /**
+     * Snapshots for partial updates, only present when enabled through {@link #enableDirtyTracking}
+     */
+    private DirtyTracker dirtyTracker;
+    /**
+     * Field the version of a document is kept in, only present when enabled through {@link #enableVersioning}
+     */
+    private String versionField;
+    /**
+     * Invalidations from and to other nodes, only present when enabled through {@link #enableInvalidation}
+     */
+    private InvalidationBus invalidationBus;
+    /**
+     * Type cached keys are reloaded as when another node changed them, null to only evict them
+     */
+    private Type refreshType;
 
     public MongoStorage(MongoCollection<Document> collection, Gson gson) {
+        this(collection, gson, StorageExecutors.getDefault());
+    }
+
+    /**
+     * Create a storage that runs its asynchronous operations on the given executor
+     *
+     * @param collection {@link MongoCollection collection}
+     * @param gson       {@link Gson gson instance}
+     * @param executor   {@link Executor executor for blocking I/O}
+     */
+    public MongoStorage(MongoCollection<Document> collection, Gson gson, Executor executor) {
         this.collection = collection;
+        this.bsonCollection = collection.withDocumentClass(BsonDocument.class);
         this.gson = gson;
         this.typeToken = new TypeToken<V>() {}.getType();
+        this.executor = executor;
+        this.writer = new KeyedSerialExecutor(executor);
+    }
+
+    /**
+     * Encode and decode values straight from and to BSON through {@link GsonCodec},
+     * instead of going through JSON text and {@link Document#parse(String)}.
+     * The stored documents are the same in both modes, so this can be toggled at any time.
+     *
+     * @return {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableBsonCodec() {
+        this.bsonCodec = true;
+        return this;
+    }
+
+    /**
+     * Change how keys are stored in {@code _id}, string keys are the default.
+     * Switch to {@link KeyFormat#MIGRATING} on every node, run {@link KeyMigration}
+     * and switch to {@link KeyFormat#BINARY} once it has finished.
+     *
+     * @param keyFormat {@link KeyFormat key format}
+     * @return          {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> withKeyFormat(KeyFormat keyFormat) {
+        this.keyFormat = keyFormat;
+        return this;
+    }
+
+    public KeyFormat getKeyFormat() {
+        return this.keyFormat;
+    }
+
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Create a migration that rewrites string keyed documents of this storage to binary keys
+     *
+     * @return {@link KeyMigration migration}
+     */
+    public KeyMigration createKeyMigration() {
+        return new KeyMigration(this.collection);
+    }
+
+    /**
+     * Cache loaded values, bounded by the amount of entries.
+     * Saves write through to the cache and deletes invalidate it,
+     * raw saves invalidate the key as there is no value to cache.
+     *
+     * @param maximumSize       {@link Long maximum amount of cached entries}
+     * @param expireAfterAccess {@link Long time after the last access before an entry expires}
+     * @param unit              {@link TimeUnit unit of the expiry}
+     * @return                  {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableCache(long maximumSize, long expireAfterAccess, TimeUnit unit) {
+        return this.enableCache(new StorageCache<>(maximumSize, expireAfterAccess, unit));
+    }
+
+    /**
+     * Cache loaded values in the given cache, for example one bounded by weight
+     *
+     * @param cache {@link StorageCache cache}
+     * @return      {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableCache(StorageCache<V> cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Keep the encoded documents of loaded keys outside of the heap, in 1 MB slabs.
+     * Loads that miss the regular cache decode from here instead of asking Mongo,
+     * which suits large amounts of cold, read-mostly data that is too expensive as objects.
+     * Saves and deletes drop the key from it.
+     *
+     * @param maximumBytes {@link Long direct memory to use at most}
+     * @param compress     {@link Boolean whether documents are deflated}
+     * @return             {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableOffHeapCache(long maximumBytes, boolean compress) {
+        return this.enableOffHeapCache(new OffHeapCache(maximumBytes, 1024 * 1024, compress));
+    }
+
+    public MongoStorage<V> enableOffHeapCache(OffHeapCache offHeapCache) {
+        this.offHeapCache = offHeapCache;
+        return this;
+    }
+
+    /**
+     * Keep the caches of this storage in line with other nodes that share the collection.
+     * Saves, deletes and updates publish the keys they changed once they reached Mongo,
+     * journaled writes once they were replayed. Keys other nodes changed are evicted.
+     *
+     * @param transport {@link InvalidationTransport transport shared with the other nodes}
+     * @return          {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableInvalidation(InvalidationTransport transport) {
+        return this.enableInvalidation(transport, null);
+    }
+
+    /**
+     * Like {@link #enableInvalidation(InvalidationTransport)}, but keys other nodes changed
+     * that were cached here are loaded again straight away, so hot keys stay cached
+     *
+     * @param transport   {@link InvalidationTransport transport shared with the other nodes}
+     * @param refreshType {@link Type type to reload values as}
+     * @return            {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableInvalidation(InvalidationTransport transport, Type refreshType) {
+        if (this.invalidationBus != null) {
+            this.invalidationBus.close();
+        }
+        this.refreshType = refreshType;
+        this.invalidationBus = new InvalidationBus(transport, this.collection.getNamespace().getFullName(), this::evict, this::forgetAll);
+        return this;
+    }
+
+    /**
+     * Hit and miss statistics of the cache
+     *
+     * @return {@link CacheStats stats, null if caching is disabled}
+     */
+    public CacheStats getCacheStats() {
+        return this.cache == null ? null : this.cache.getStats();
+    }
+
+    /**
+     * Drop everything this storage remembers about a key (cached value and snapshot),
+     * for example when it was changed by another application
+     *
+     * @param key {@link UUID key}
+     */
+    @Override
+    public void invalidate(UUID key) {
+        this.forgetStale(key);
+        if (this.cache != null) {
+            this.cache.invalidate(key);
+        }
+        if (this.dirtyTracker != null) {
+            this.dirtyTracker.forget(key);
+        }
+    }
+
+    /**
+     * Keep a version number in every document, so several nodes can save the same keys without a lock.
+     * {@link #saveVersioned} only replaces a document that still has the version it was loaded with,
+     * see {@link #loadVersioned}, and field updates increase it.
+     * <p>
+     * Plain saves store documents without a version, so versioned saves that expected the previous
+     * one conflict with them. Versioned saves always go straight to Mongo, never through write-behind
+     * or the journal, and can't be used with {@link KeyFormat#MIGRATING}.
+     *
+     * @param field {@link String name of the version field}
+     * @return      {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableVersioning(String field) {
+        Preconditions.checkArgument(!field.equals("_id"), "[Storage] _id can't be the version field!");
+        this.versionField = field;
+        return this;
+    }
+
+    public MongoStorage<V> enableVersioning() {
+        return this.enableVersioning("_version");
+    }
+
+    /**
+     * Only send the fields that changed since a key was last loaded or saved by this storage.
+     * Saves compare the new document to that snapshot and send an {@code updateOne} with
+     * {@code $set}/{@code $unset} of the changed paths. Keys without a snapshot, or with more
+     * changed paths than {@code replaceRatio} times their top-level field count, are replaced as usual.
+     * <p>
+     * Snapshots are only taken by {@link #loadData} and saves, entries read through scans have none.
+     *
+     * @param replaceRatio {@link Double changed paths per top-level field above which the document is replaced}
+     * @return             {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableDirtyTracking(double replaceRatio) {
+        this.dirtyTracker = new DirtyTracker(replaceRatio);
+        return this;
+    }
+
+    /**
+     * Queue saves and deletes instead of sending them one by one.
+     * Queued writes are flushed as unordered bulk writes once {@code batchSize}
+     * keys are pending or every {@code flushInterval}, whatever comes first.
+     * Only the latest queued write of a key is sent.
+     * <p>
+     * Reads are not aware of queued writes, a load right after a save
+     * can return the previous document until the queue has been flushed.
+     *
+     * @param batchSize     {@link Integer maximum writes per bulk write}
+     * @param flushInterval {@link Long interval between timed flushes}
+     * @param unit          {@link TimeUnit unit of the interval}
+     * @return              {@link MongoStorage this storage}
+     */
+    public MongoStorage<V> enableWriteBehind(int batchSize, long flushInterval, TimeUnit unit) {
+        Preconditions.checkState(this.journal == null, "[Storage] Write-behind can't be combined with the journal!");
+        if (this.writeBehind != null) {
+            this.writeBehind.shutdown();
+        }
+        this.writeBehind = new WriteBehindQueue<>(this.bsonCollection, batchSize, flushInterval, unit);
+        return this;
+    }
+
+    /**
+     * Acknowledge saves and deletes once they are in an append-only journal on disk,
+     * and replay them to Mongo in the background, see {@link WriteJournal}.
+     * While Mongo is unreachable writes keep being accepted and are replayed once it is back,
+     * writes that were not replayed yet survive a restart.
+     * <p>
+     * Loads see journaled writes that were not replayed yet, scans and queries don't.
+     * Field updates are sent straight to Mongo, a journaled save of the same key
+     * that is replayed after them overwrites them.
+     *
+     * @param file           {@link File journal file, one per storage}
+     * @param fsync          {@link Boolean whether writes are only acknowledged once they are on disk}
+     * @param batchSize      {@link Integer maximum writes per replayed bulk write}
+     * @param replayInterval {@link Long interval between replays}
+     * @param unit           {@link TimeUnit unit of the interval}
+     * @return               {@link MongoStorage this storage}
+     * @throws IOException   if the journal can't be opened
+     */
+    public MongoStorage<V> enableJournal(File file, boolean fsync, int batchSize, long replayInterval, TimeUnit unit) throws IOException {
+        Preconditions.checkState(this.writeBehind == null, "[Storage] The journal can't be combined with write-behind!");
+        if (this.journal != null) {
+            this.journal.shutdown();
+        }
+        this.journal = new WriteJournal(file, this.bsonCollection, (key, document) -> {
+            if (document == null) {
+                return new DeleteManyModel<>(this.keyFormat.readFilter(key));
+            }
+            return new ReplaceOneModel<>(this.keyFormat.writeFilter(key), document, REPLACE_OPTIONS);
+        }, fsync, batchSize, replayInterval, unit);
+        // Other nodes only see journaled writes once they are replayed
+        this.journal.onReplayed(this::publish);
+        return this;
+    }
+
+    public MongoStorage<V> enableJournal(File file) throws IOException {
+        return this.enableJournal(file, true, 500, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Amount of journaled writes that were not replayed to Mongo yet
+     *
+     * @return {@link Integer pending writes, 0 if the journal is disabled}
+     */
+    public int getJournalBacklog() {
+        return this.journal == null ? 0 : this.journal.getPendingCount();
+    }
+
+    /**
+     * Flush all queued or journaled writes, completes immediately if neither is enabled
+     *
+     * @return {@link CompletableFuture completed once the queue was flushed}
+     */
+    public CompletableFuture<Void> flush() {
+        if (this.journal != null) {
+            return this.journal.flush();
+        }
+        if (this.writeBehind == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.writeBehind.flush();
+    }
+
+    /**
+     * Flush anything that is still queued and stop background work,
+     * should be called when the plugin disables.
+     */
+    @Override
+    public void shutdown() {
+        if (this.writeBehind != null) {
+            this.writeBehind.shutdown();
+        }
+        if (this.journal != null) {
+            this.journal.shutdown();
+        }
+        if (this.invalidationBus != null) {
+            this.invalidationBus.close();
+        }
     }
 
+    /**
+     * Create the indexes this storage needs, indexes that exist already are left alone.
+     * Meant to be called once at startup, so queries on these fields don't scan the collection.
+     *
+     * @param indexes {@link IndexModel indexes, see {@link com.mongodb.client.model.Indexes}}
+     * @return        {@link List names of the indexes}
+     */
+    public List<String> ensureIndexes(IndexModel... indexes) {
+        if (indexes.length == 0) {
+            return new ArrayList<>();
+        }
+        return this.collection.createIndexes(Arrays.asList(indexes));
+    }
+
+    /**
+     * Create a batched, resumable migration of the documents of this storage.
+     * Keys it changes are dropped from the cache and their snapshots are forgotten.
+     *
+     * @param name     {@link String unique name of the migration}
+     * @param metadata {@link MongoCollection collection the checkpoint is kept in}
+     * @return         {@link CollectionMigration migration}
+     */
+    public CollectionMigration createMigration(String name, MongoCollection<?> metadata) {
+        return new CollectionMigration(this.collection, metadata, name).onChange(id -> {
+            UUID key = KeyFormat.fromId(id);
+            if (key != null) {
+                this.invalidate(key);
+                this.publish(key);
+            }
+        });
+    }
+
+    /**
+     * Start a query over the entries of this storage
+     *
+     * @return {@link StorageQuery query}
+     */
+    public StorageQuery<V> query() {
+        return this.query(this.typeToken);
+    }
+
+    public StorageQuery<V> query(Type type) {
+        return new StorageQuery<>(this, type);
+    }
+
+    Stream<V> stream(StorageQuery<V> query, int limit) {
+        FindIterable<?> iterable = this.findEntries(query.toFilter(), 0, query.getProjection());
+        Bson sort = query.toSort();
+        if (sort != null) {
+            iterable.sort(sort);
+        }
+        iterable.skip(query.getSkip()).limit(limit);
+        return this.decode(iterable, query.getType());
+    }
+
+    long count(StorageQuery<V> query) {
+        CountOptions options = new CountOptions().skip(query.getSkip()).limit(query.getLimit());
+        return this.collection.countDocuments(query.toFilter(), options);
+    }
+
+    @Override
     public CompletableFuture<List<V>> fetchAllEntries() {
         return CompletableFuture.supplyAsync(() -> {
-            List<V> found = new ArrayList<>();
-            for (Document document : this.collection.find()) {
-                if (document == null) {
-                    continue;
-                }
-                found.add(this.gson.fromJson(document.toJson(), typeToken));
+            try (Stream<V> stream = this.streamEntries(this.typeToken, 0, null)) {
+                return stream.collect(Collectors.toList());
             }
+        }, this.executor);
+    }
+
+    /**
+     * Fetch all entries by scanning {@code _id} ranges of the collection concurrently,
+     * see {@link #forEachEntryParallel(Type, int, int, Bson, Consumer)}.
+     * The entries are not in any particular order.
+     *
+     * @param parallelism {@link Integer amount of ranges scanned at the same time}
+     * @return            {@link CompletableFuture all entries}
+     */
+    public CompletableFuture<List<V>> fetchAllEntries(int parallelism) {
+        List<List<V>> parts = new ArrayList<>();
+        return this.scanParallel(parallelism, filter -> {
+            List<V> part = new ArrayList<>();
+            synchronized (parts) {
+                parts.add(part);
+            }
+            this.scanRange(filter, this.typeToken, 0, null, part::add);
+        }).thenApply(ignored -> {
+            List<V> found = new ArrayList<>();
+            parts.forEach(found::addAll);
             return found;
         });
     }
 
+    /**
+     * Walk all entries of the collection with several cursors at once. The collection is split
+     * into {@code _id} ranges from sampled boundaries and the ranges are scanned and decoded
+     * concurrently on the storage executor, at most {@code parallelism} at a time.
+     * The consumer is called from several threads and has to be thread-safe.
+     *
+     * @param type        {@link Type type of the entries}
+     * @param parallelism {@link Integer amount of ranges scanned at the same time}
+     * @param batchSize   {@link Integer documents per cursor batch, 0 for the driver default}
+     * @param projection  {@link Bson projection, null to fetch whole documents}
+     * @param consumer    {@link Consumer thread-safe consumer}
+     * @return            {@link Long amount of entries that were consumed}
+     */
+    public CompletableFuture<Long> forEachEntryParallel(Type type, int parallelism, int batchSize, Bson projection, Consumer<V> consumer) {
+        AtomicLong consumed = new AtomicLong();
+        return this.scanParallel(parallelism, filter -> this.scanRange(filter, type, batchSize, projection, value -> {
+            consumer.accept(value);
+            consumed.incrementAndGet();
+        })).thenApply(ignored -> consumed.get());
+    }
+
+    /**
+     * Split the collection and run the scanner over the ranges, {@code parallelism} ranges at a time.
+     * The ranges are cut finer than the parallelism, so a slow range does not hold up the rest.
+     */
+    private CompletableFuture<Void> scanParallel(int parallelism, Consumer<Bson> scanner) {
+        Preconditions.checkArgument(parallelism > 0, "[Storage] Parallelism must be positive!");
+
+        return CompletableFuture.supplyAsync(() -> IdPartitioner.partition(this.collection, parallelism * 4), this.executor).thenCompose(ranges -> {
+            Queue<Bson> queue = new ConcurrentLinkedQueue<>(ranges);
+            List<CompletableFuture<Void>> workers = new ArrayList<>(parallelism);
+            for (int i = 0; i < Math.min(parallelism, ranges.size()); i++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    Bson filter;
+                    while ((filter = queue.poll()) != null) {
+                        scanner.accept(filter);
+                    }
+                }, this.executor));
+            }
+            return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0]));
+        });
+    }
+
+    private void scanRange(Bson filter, Type type, int batchSize, Bson projection, Consumer<V> consumer) {
+        if (this.bsonCodec) {
+            GsonCodec<V> codec = this.codec(type);
+            try (MongoCursor<RawBsonDocument> cursor = this.find(filter, batchSize, projection, RawBsonDocument.class).iterator()) {
+                cursor.forEachRemaining(document -> consumer.accept(document.decode(codec)));
+            }
+            return;
+        }
+
+        try (MongoCursor<Document> cursor = this.find(filter, batchSize, projection, Document.class).iterator()) {
+            cursor.forEachRemaining(document -> consumer.accept(this.gson.fromJson(document.toJson(), type)));
+        }
+    }
+
+    @Override
     public CompletableFuture<List<Document>> fetchAllRawEntries() {
         return CompletableFuture.supplyAsync(() -> {
             List<Document> found = new ArrayList<>();
@@ -61,71 +619,935 @@ public class MongoStorage<V> {
                 found.add(document);
             }
             return found;
-        });
+        }, this.executor);
+    }
+
+    /**
+     * Fetch all documents of the collection without decoding them. A {@link RawBsonDocument}
+     * keeps the bytes it was sent in and only decodes the fields that are read, so scans
+     * that need a few fields don't build a full {@link Document} tree per entry.
+     *
+     * @return {@link CompletableFuture all raw documents}
+     */
+    public CompletableFuture<List<RawBsonDocument>> fetchAllRawBsonEntries() {
+        return CompletableFuture.supplyAsync(() -> this.find(0, null, RawBsonDocument.class).into(new ArrayList<>()), this.executor);
+    }
+
+    /**
+     * Stream all documents of the collection without decoding them, see {@link #fetchAllRawBsonEntries()}.
+     * The stream holds an open cursor, so always close it (try-with-resources).
+     *
+     * @param batchSize  {@link Integer documents per cursor batch, 0 for the driver default}
+     * @param projection {@link Bson projection, null to fetch whole documents}
+     * @return           {@link Stream lazily fetched documents}
+     */
+    public Stream<RawBsonDocument> streamRawBsonEntries(int batchSize, Bson projection) {
+        return this.stream(this.find(batchSize, projection, RawBsonDocument.class).iterator());
+    }
+
+    /**
+     * Stream all entries of the collection, documents are fetched in batches
+     * and decoded one at a time while the stream is consumed.
+     * The stream holds an open cursor, so always close it (try-with-resources).
+     *
+     * @param type       {@link Type type of the entries}
+     * @param batchSize  {@link Integer documents per cursor batch, 0 for the driver default}
+     * @param projection {@link Bson projection, null to fetch whole documents}
+     * @return           {@link Stream lazily decoded entries}
+     */
+    public Stream<V> streamEntries(Type type, int batchSize, Bson projection) {
+        return this.decode(this.findEntries(new BsonDocument(), batchSize, projection), type);
     }
 
-    public void saveData(UUID key, V value, Type type) {
-        CompletableFuture.runAsync(() -> this.saveDataSync(key, value, type));
+    /**
+     * Stream all raw documents of the collection.
+     * The stream holds an open cursor, so always close it (try-with-resources).
+     *
+     * @param batchSize  {@link Integer documents per cursor batch, 0 for the driver default}
+     * @param projection {@link Bson projection, null to fetch whole documents}
+     * @return           {@link Stream lazily fetched documents}
+     */
+    public Stream<Document> streamRawEntries(int batchSize, Bson projection) {
+        return this.stream(this.find(batchSize, projection, Document.class).iterator());
+    }
+
+    /**
+     * Walk all entries of the collection asynchronously without keeping them in memory.
+     * Returning false from the consumer stops the walk and closes the cursor.
+     *
+     * @param type       {@link Type type of the entries}
+     * @param batchSize  {@link Integer documents per cursor batch, 0 for the driver default}
+     * @param projection {@link Bson projection, null to fetch whole documents}
+     * @param consumer   {@link Predicate consumer, return false to stop}
+     * @return           {@link Long amount of entries that were consumed}
+     */
+    public CompletableFuture<Long> forEachEntry(Type type, int batchSize, Bson projection, Predicate<V> consumer) {
+        return CompletableFuture.supplyAsync(() -> {
+            long consumed = 0;
+            try (Stream<V> stream = this.streamEntries(type, batchSize, projection)) {
+                Iterator<V> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    consumed++;
+                    if (!consumer.test(iterator.next())) {
+                        break;
+                    }
+                }
+            }
+            return consumed;
+        }, this.executor);
+    }
+
+    private <T> FindIterable<T> find(int batchSize, Bson projection, Class<T> resultClass) {
+        return this.find(new BsonDocument(), batchSize, projection, resultClass);
+    }
+
+    private <T> FindIterable<T> find(Bson filter, int batchSize, Bson projection, Class<T> resultClass) {
+        FindIterable<T> iterable = this.collection.find(filter, resultClass);
+        if (batchSize > 0) {
+            iterable.batchSize(batchSize);
+        }
+        if (projection != null) {
+            iterable.projection(projection);
+        }
+        return iterable;
+    }
+
+    /**
+     * Find in the document class values are decoded from, see {@link #decode}
+     */
+    private FindIterable<?> findEntries(Bson filter, int batchSize, Bson projection) {
+        if (this.bsonCodec) {
+            return this.find(filter, batchSize, projection, RawBsonDocument.class);
+        }
+        return this.find(filter, batchSize, projection, Document.class);
+    }
+
+    /**
+     * Lazily decode the results of {@link #findEntries}
+     */
+    @SuppressWarnings("unchecked")
+    private Stream<V> decode(FindIterable<?> iterable, Type type) {
+        if (this.bsonCodec) {
+            GsonCodec<V> codec = this.codec(type);
+            return this.stream(((FindIterable<RawBsonDocument>) iterable).iterator()).map(document -> document.decode(codec));
+        }
+        return this.stream(((FindIterable<Document>) iterable).iterator()).map(document -> this.gson.fromJson(document.toJson(), type));
+    }
+
+    private <T> Stream<T> stream(MongoCursor<T> cursor) {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveData(UUID key, V value, Type type) {
+        return this.afterWrite(key, this.submitData(key, value, type));
+    }
+
+    private CompletableFuture<Void> submitData(UUID key, V value, Type type) {
+        this.forgetStale(key);
+        if (this.cache != null) {
+            this.cache.put(key, value);
+        }
+        if (this.journal != null) {
+            return this.journalData(key, value, type);
+        }
+        if (this.writeBehind != null) {
+            Bson query = this.keyFormat.writeFilter(key);
+            CompletableFuture<Void> future = this.writeBehind.enqueue(key, () -> this.saveModel(key, query, this.encode(value, type)),
+                    () -> new ReplaceOneModel<>(query, this.encode(value, type), REPLACE_OPTIONS));
+
+            if (this.dirtyTracker != null) {
+                // The snapshot no longer matches what is stored
+                future.whenComplete((ignored, throwable) -> {
+                    if (throwable != null) this.dirtyTracker.forget(key);
+                });
+            }
+            return future;
+        }
+        return this.writer.submit(key, () -> this.writeData(key, value, type), true);
     }
 
     public void saveDataSync(UUID key, V value, Type type) {
-        Bson query = Filters.eq("_id", key.toString());
-        Document parsed = Document.parse(gson.toJson(value, type));
-        this.collection.replaceOne(query, parsed, REPLACE_OPTIONS);
+        this.forgetStale(key);
+        if (this.cache != null) {
+            this.cache.put(key, value);
+        }
+        if (this.journal != null) {
+            // Has to go through the journal, or an older journaled save could overwrite it
+            this.journalData(key, value, type).join();
+        } else if (this.writeBehind != null) {
+            // Same for the write-behind queue, an older queued write would be flushed after it
+            CompletableFuture<Void> future = this.afterWrite(key, this.submitData(key, value, type));
+            this.writeBehind.flush();
+            future.join();
+        } else {
+            // Behind the async writes of the key still waiting, or they would overwrite it
+            this.writer.submit(key, () -> this.writeData(key, value, type), false).join();
+            this.publish(key);
+        }
+        this.forgetStale(key);
+    }
+
+    private CompletableFuture<Void> journalData(UUID key, V value, Type type) {
+        if (this.dirtyTracker != null) {
+            // Replays replace the whole document, there is nothing to diff against
+            this.dirtyTracker.forget(key);
+        }
+        return this.journal.append(key, () -> this.encode(value, type));
+    }
+
+    private void writeData(UUID key, V value, Type type) {
+        Bson query = this.keyFormat.writeFilter(key);
+        BsonDocument document = this.encode(value, type);
+        if (this.dirtyTracker == null) {
+            this.bsonCollection.replaceOne(query, document, REPLACE_OPTIONS);
+            return;
+        }
+
+        try {
+            WriteModel<BsonDocument> model = this.saveModel(key, query, document);
+            if (model instanceof UpdateOneModel) {
+                UpdateOneModel<BsonDocument> update = (UpdateOneModel<BsonDocument>) model;
+                if (this.bsonCollection.updateOne(query, update.getUpdate()).getMatchedCount() == 0) {
+                    // Deleted by someone else since the snapshot was taken
+                    this.bsonCollection.replaceOne(query, document, REPLACE_OPTIONS);
+                }
+            } else if (model != null) {
+                this.bsonCollection.replaceOne(query, document, REPLACE_OPTIONS);
+            }
+        } catch (RuntimeException e) {
+            this.dirtyTracker.forget(key);
+            throw e;
+        }
+    }
+
+    /**
+     * The write that stores the document, a partial update if dirty tracking allows it
+     *
+     * @return {@link WriteModel write model, null if nothing changed}
+     */
+    private WriteModel<BsonDocument> saveModel(UUID key, Bson query, BsonDocument document) {
+        if (this.dirtyTracker != null) {
+            BsonDocument update = this.dirtyTracker.update(key, document);
+            if (update != null) {
+                return update.isEmpty() ? null : new UpdateOneModel<>(query, update);
+            }
+        }
+        return new ReplaceOneModel<>(query, document, REPLACE_OPTIONS);
     }
 
-    public void saveRawData(UUID key, Document document) {
-        CompletableFuture.runAsync(() -> this.saveRawDataSync(key, document));
+    @Override
+    public CompletableFuture<Void> saveRawData(UUID key, Document document) {
+        this.invalidate(key);
+        if (this.journal != null) {
+            return this.afterWrite(key, this.journal.append(key, () -> this.wrap(document)));
+        }
+        if (this.writeBehind != null) {
+            return this.afterWrite(key, this.writeBehind.enqueue(key, () -> new ReplaceOneModel<>(this.keyFormat.writeFilter(key), this.wrap(document), REPLACE_OPTIONS)));
+        }
+        return this.afterWrite(key, this.writer.submit(key, () -> this.writeRawData(key, document), true));
     }
 
     public void saveRawDataSync(UUID key, Document document) {
-        Bson query = Filters.eq("_id", key.toString());
+        this.invalidate(key);
+        if (this.journal != null) {
+            this.journal.append(key, () -> this.wrap(document)).join();
+        } else if (this.writeBehind != null) {
+            CompletableFuture<Void> future = this.afterWrite(key, this.writeBehind.enqueue(key, () -> new ReplaceOneModel<>(this.keyFormat.writeFilter(key), this.wrap(document), REPLACE_OPTIONS)));
+            this.writeBehind.flush();
+            future.join();
+        } else {
+            this.writer.submit(key, () -> this.writeRawData(key, document), false).join();
+            this.publish(key);
+        }
+        this.forgetStale(key);
+    }
+
+    private void writeRawData(UUID key, Document document) {
+        Bson query = this.keyFormat.writeFilter(key);
         this.collection.replaceOne(query, document, REPLACE_OPTIONS);
     }
 
     public V loadData(UUID key, Type type) {
-        Bson query = Filters.eq("_id", key.toString());
+        if (this.cache == null) {
+            Flight<V> prefetch = this.prefetched.getIfPresent(key);
+            if (prefetch != null && prefetch.type.equals(type)) {
+                this.prefetched.invalidate(key);
+                return prefetch.future.join();
+            }
+            return this.fetchData(key, type);
+        }
+
+        V cached = this.cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
-        Document document = this.collection.find(query).first();
+        long stamp = this.cache.stamp(key);
+        V value = this.fetchData(key, type);
+        if (value != null) {
+            this.cache.putIfUnchanged(key, value, stamp);
+        }
+        return value;
+    }
+
+    private V fetchData(UUID key, Type type) {
+        WriteJournal.Entry journaled = this.journal == null ? null : this.journal.get(key);
+        if (journaled != null) {
+            return journaled.isDeleted() ? null : this.decode(journaled.getDocument(), type);
+        }
+
+        long stamp = 0;
+        if (this.offHeapCache != null) {
+            byte[] cached = this.offHeapCache.get(key);
+            if (cached != null) {
+                RawBsonDocument document = new RawBsonDocument(cached);
+                if (this.dirtyTracker != null) {
+                    this.dirtyTracker.remember(key, document);
+                }
+                return this.decode(document, type);
+            }
+            stamp = this.offHeapCache.stamp(key);
+        }
+
+        Bson query = this.keyFormat.readFilter(key);
+
+        if (this.bsonCodec) {
+            RawBsonDocument document = this.first(this.collection.find(query, RawBsonDocument.class));
+            if (document == null) return null;
+
+            if (this.dirtyTracker != null) {
+                this.dirtyTracker.remember(key, document);
+            }
+            if (this.offHeapCache != null) {
+                this.offHeapCache.putIfUnchanged(key, toBytes(document), stamp);
+            }
+            return document.decode(this.codec(type));
+        }
+
+        Document document = this.first(this.collection.find(query));
         if (document == null) return null;
 
+        if (this.dirtyTracker != null) {
+            this.dirtyTracker.remember(key, this.wrap(document));
+        }
+        if (this.offHeapCache != null) {
+            this.offHeapCache.putIfUnchanged(key, toBytes(new RawBsonDocument(this.wrap(document), new BsonDocumentCodec())), stamp);
+        }
         return this.gson.fromJson(document.toJson(), type);
     }
 
+    private static byte[] toBytes(RawBsonDocument document) {
+        ByteBuf buffer = document.getByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Load many keys at once, see {@link #loadAllAsync(Collection, Type, int)}.
+     * Blocks until every chunk has been loaded.
+     *
+     * @param keys {@link Collection keys to load}
+     * @param type {@link Type type of the values}
+     * @return     {@link LoadResult found values and missing keys}
+     */
+    public LoadResult<V> loadAll(Collection<UUID> keys, Type type) {
+        return this.loadAllAsync(keys, type, LOAD_CHUNK_SIZE).join();
+    }
+
+    @Override
+    public CompletableFuture<LoadResult<V>> loadAllAsync(Collection<UUID> keys, Type type) {
+        return this.loadAllAsync(keys, type, LOAD_CHUNK_SIZE);
+    }
+
+    /**
+     * Load many keys at once. Cached keys are served from the cache, the rest is split
+     * into chunks that are each fetched with a single {@code $in} query, concurrently.
+     *
+     * @param keys      {@link Collection keys to load}
+     * @param type      {@link Type type of the values}
+     * @param chunkSize {@link Integer keys per query}
+     * @return          {@link LoadResult found values and missing keys}
+     */
+    public CompletableFuture<LoadResult<V>> loadAllAsync(Collection<UUID> keys, Type type, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "[Storage] Chunk size must be positive!");
+
+        Set<UUID> requested = new LinkedHashSet<>(keys);
+        Map<UUID, V> found = new HashMap<>();
+        List<UUID> remaining = new ArrayList<>();
+
+        for (UUID key : requested) {
+            V cached = this.cache == null ? null : this.cache.get(key);
+            if (cached != null) {
+                found.put(key, cached);
+                continue;
+            }
+
+            WriteJournal.Entry journaled = this.journal == null ? null : this.journal.get(key);
+            if (journaled == null) {
+                remaining.add(key);
+            } else if (!journaled.isDeleted()) {
+                found.put(key, this.decode(journaled.getDocument(), type));
+            }
+        }
+
+        List<CompletableFuture<Map<UUID, V>>> chunks = new ArrayList<>();
+        for (int i = 0; i < remaining.size(); i += chunkSize) {
+            List<UUID> chunk = remaining.subList(i, Math.min(i + chunkSize, remaining.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> this.fetchChunk(chunk, type), this.executor));
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            chunks.forEach(chunk -> found.putAll(chunk.join()));
+
+            Set<UUID> missing = new HashSet<>(requested);
+            missing.removeAll(found.keySet());
+            return new LoadResult<>(found, missing);
+        });
+    }
+
+    private Map<UUID, V> fetchChunk(List<UUID> keys, Type type) {
+        Map<UUID, Long> stamps = new HashMap<>();
+        if (this.cache != null) {
+            keys.forEach(key -> stamps.put(key, this.cache.stamp(key)));
+        }
+
+        Map<UUID, V> found = new HashMap<>();
+        Bson query = this.keyFormat.readFilter(keys);
+        if (this.bsonCodec) {
+            GsonCodec<V> codec = this.codec(type);
+            for (RawBsonDocument document : this.collection.find(query, RawBsonDocument.class)) {
+                BsonValue id = document.get("_id");
+                UUID key = KeyFormat.fromId(id);
+                if (key == null || found.containsKey(key) && !KeyFormat.isBinary(id)) continue;
+
+                if (this.dirtyTracker != null) {
+                    this.dirtyTracker.remember(key, document);
+                }
+                found.put(key, document.decode(codec));
+            }
+        } else {
+            for (Document document : this.collection.find(query)) {
+                Object id = document.get("_id");
+                UUID key = KeyFormat.fromId(id);
+                if (key == null || found.containsKey(key) && !KeyFormat.isBinary(id)) continue;
+
+                if (this.dirtyTracker != null) {
+                    this.dirtyTracker.remember(key, this.wrap(document));
+                }
+                found.put(key, this.gson.fromJson(document.toJson(), type));
+            }
+        }
+
+        if (this.cache != null) {
+            found.forEach((key, value) -> this.cache.putIfUnchanged(key, value, stamps.get(key)));
+        }
+        return found;
+    }
+
+    /**
+     * Load a key asynchronously. Concurrent loads of the same key share
+     * a single query and get the same decoded value.
+     *
+     * @param key  {@link UUID key}
+     * @param type {@link Type type of the value}
+     * @return     {@link CompletableFuture value, null if there is none}
+     */
+    @Override
     public CompletableFuture<V> loadDataAsync(UUID key, Type type) {
-        return CompletableFuture.supplyAsync(() -> this.loadData(key, type));
+        V cached = this.cache == null ? null : this.cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Flight<V> flight = new Flight<>(type);
+        Flight<V> running = this.loads.putIfAbsent(key, flight);
+        if (running != null) {
+            if (running.type.equals(type)) {
+                // A copy, so a caller completing its future can't affect the others
+                return running.future.thenApply(value -> value);
+            }
+            return CompletableFuture.supplyAsync(() -> this.loadData(key, type), this.executor);
+        }
+
+        this.executor.execute(() -> {
+            try {
+                flight.future.complete(this.loadData(key, type));
+            } catch (Throwable throwable) {
+                flight.future.completeExceptionally(throwable);
+            } finally {
+                this.loads.remove(key, flight);
+            }
+        });
+        return flight.future.thenApply(value -> value);
+    }
+
+    /**
+     * Start loading keys that are about to be needed, for example from a pre-login event.
+     * Loads of these keys made while the prefetch runs join it. The values end up in the cache,
+     * or without a cache are kept for a short while for the first load of each key.
+     * The type has to be the concrete type of the values, the one loads are made with,
+     * the storage's own type parameter is erased at runtime.
+     *
+     * @param keys {@link Collection keys to load}
+     * @param type {@link Type type of the values}
+     * @return     {@link CompletableFuture completed once the keys are loaded}
+     */
+    public CompletableFuture<Void> prefetch(Collection<UUID> keys, Type type) {
+        Map<UUID, Flight<V>> flights = new HashMap<>();
+        for (UUID key : keys) {
+            if (this.cache != null && this.cache.get(key) != null) continue;
+
+            Flight<V> flight = new Flight<>(type);
+            if (this.loads.putIfAbsent(key, flight) == null) {
+                flights.put(key, flight);
+            }
+        }
+
+        if (flights.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.loadAllAsync(flights.keySet(), type).handle((result, throwable) -> {
+            flights.forEach((key, flight) -> {
+                if (throwable != null) {
+                    flight.future.completeExceptionally(throwable);
+                } else {
+                    flight.future.complete(result.get(key));
+                    if (this.cache == null && this.loads.get(key) == flight) {
+                        this.prefetched.put(key, flight);
+                    }
+                }
+                this.loads.remove(key, flight);
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Forget the key again once a write landed, a load that ran while it was in flight
+     * may have kept the previous document, and tell other nodes about it
+     */
+    private CompletableFuture<Void> afterWrite(UUID key, CompletableFuture<Void> write) {
+        if (this.offHeapCache == null && (this.invalidationBus == null || this.journal != null)) {
+            return write;
+        }
+        return write.whenComplete((ignored, throwable) -> {
+            if (this.offHeapCache != null) {
+                this.offHeapCache.invalidate(key);
+            }
+            if (this.journal == null) {
+                this.publish(key);
+            }
+        });
+    }
+
+    /**
+     * Make sure nothing that was loaded before a change is handed out after it
+     */
+    private void forgetStale(UUID key) {
+        this.loads.remove(key);
+        this.prefetched.invalidate(key);
+        if (this.offHeapCache != null) {
+            this.offHeapCache.invalidate(key);
+        }
     }
 
     public Document loadRawData(UUID key) {
-        Bson query = Filters.eq("_id", key.toString());
-        return this.collection.find(query).first();
+        WriteJournal.Entry journaled = this.journal == null ? null : this.journal.get(key);
+        if (journaled != null) {
+            return journaled.isDeleted() ? null : journaled.getDocument().decode(this.collection.getCodecRegistry().get(Document.class));
+        }
+
+        Bson query = this.keyFormat.readFilter(key);
+        return this.first(this.collection.find(query));
+    }
+
+    /**
+     * Load the document of a key without decoding it, see {@link #fetchAllRawBsonEntries()}
+     *
+     * @param key {@link UUID key}
+     * @return    {@link RawBsonDocument document, null if there is none}
+     */
+    public RawBsonDocument loadRawBson(UUID key) {
+        WriteJournal.Entry journaled = this.journal == null ? null : this.journal.get(key);
+        if (journaled != null) {
+            return journaled.getDocument();
+        }
+
+        Bson query = this.keyFormat.readFilter(key);
+        return this.first(this.collection.find(query, RawBsonDocument.class));
     }
 
+    public CompletableFuture<RawBsonDocument> loadRawBsonAsync(UUID key) {
+        return CompletableFuture.supplyAsync(() -> this.loadRawBson(key), this.executor);
+    }
+
+    /**
+     * First document of a key lookup, the binary keyed one while migrating keys
+     */
+    private <T extends Map<String, ?>> T first(FindIterable<T> iterable) {
+        if (this.keyFormat != KeyFormat.MIGRATING) {
+            return iterable.first();
+        }
+
+        T found = null;
+        for (T document : iterable) {
+            if (found == null || KeyFormat.isBinary(document.get("_id"))) {
+                found = document;
+            }
+        }
+        return found;
+    }
+
+    @Override
     public CompletableFuture<Document> loadRawDataAsync(UUID key) {
-        return CompletableFuture.supplyAsync(() -> this.loadRawData(key));
+        return CompletableFuture.supplyAsync(() -> this.loadRawData(key), this.executor);
     }
 
-    public void deleteData(UUID key) {
-        CompletableFuture.runAsync(() -> {
-            Bson query = Filters.eq("_id", key.toString());
-            this.collection.deleteOne(query);
-        });
+    @Override
+    public CompletableFuture<Void> deleteData(UUID key) {
+        this.invalidate(key);
+        if (this.journal != null) {
+            return this.afterWrite(key, this.journal.delete(key));
+        }
+        if (this.writeBehind != null) {
+            // Goes through the queue as well, otherwise a queued save could bring the document back
+            return this.afterWrite(key, this.writeBehind.enqueue(key, () -> new DeleteManyModel<>(this.keyFormat.readFilter(key))));
+        }
+        return this.afterWrite(key, this.writer.submit(key, () -> {
+            // Many, as a key can have a document in both formats while migrating
+            Bson query = this.keyFormat.readFilter(key);
+            this.collection.deleteMany(query);
+        }, true));
+    }
+
+    /**
+     * Load a value together with the version of its document, straight from Mongo
+     *
+     * @param key  {@link UUID key}
+     * @param type {@link Type type of the value}
+     * @return     {@link Versioned value and version, null if there is no document}
+     */
+    public Versioned<V> loadVersioned(UUID key, Type type) {
+        this.checkVersioning();
+        RawBsonDocument document = this.first(this.collection.find(this.keyFormat.readFilter(key), RawBsonDocument.class));
+        if (document == null) return null;
+
+        BsonValue version = document.get(this.versionField);
+        return new Versioned<>(this.decode(document, type), version != null && version.isNumber() ? version.asNumber().longValue() : 0);
+    }
+
+    public CompletableFuture<Versioned<V>> loadVersionedAsync(UUID key, Type type) {
+        return CompletableFuture.supplyAsync(() -> this.loadVersioned(key, type), this.executor);
+    }
+
+    /**
+     * Save a value only if its document still has the expected version, otherwise nothing is written
+     * and the result holds the value that is stored now. Ordered with other asynchronous writes of the key.
+     *
+     * @param key             {@link UUID key}
+     * @param value           {@link V value}
+     * @param expectedVersion {@link Long version the value was loaded with, 0 if the document should not exist yet}
+     * @param type            {@link Type type of the value}
+     * @return                {@link CompletableFuture result}
+     */
+    public CompletableFuture<SaveResult<V>> saveVersioned(UUID key, V value, long expectedVersion, Type type) {
+        return this.saveVersioned(key, value, expectedVersion, type, null, 1);
+    }
+
+    /**
+     * Save a value only if its document still has the expected version. On a conflict the value
+     * is merged with the one that is stored now and saved again against its version,
+     * until it was saved or {@code maxAttempts} saves were tried.
+     *
+     * @param key             {@link UUID key}
+     * @param value           {@link V value}
+     * @param expectedVersion {@link Long version the value was loaded with, 0 if the document should not exist yet}
+     * @param type            {@link Type type of the value}
+     * @param merge           {@link BinaryOperator gets the stored value, null if it was deleted, and the value
+     *                        that could not be saved, returns the value to save instead or null to give up}
+     * @param maxAttempts     {@link Integer maximum amount of saves}
+     * @return                {@link CompletableFuture result of the last attempt}
+     */
+    public CompletableFuture<SaveResult<V>> saveVersioned(UUID key, V value, long expectedVersion, Type type, BinaryOperator<V> merge, int maxAttempts) {
+        CompletableFuture<SaveResult<V>> result = new CompletableFuture<>();
+        this.writer.submit(key, () -> result.complete(this.saveVersionedSync(key, value, expectedVersion, type, merge, maxAttempts)), false)
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null) result.completeExceptionally(throwable);
+                });
+        return result;
+    }
+
+    public SaveResult<V> saveVersionedSync(UUID key, V value, long expectedVersion, Type type) {
+        return this.saveVersionedSync(key, value, expectedVersion, type, null, 1);
+    }
+
+    public SaveResult<V> saveVersionedSync(UUID key, V value, long expectedVersion, Type type, BinaryOperator<V> merge, int maxAttempts) {
+        this.checkVersioning();
+        Preconditions.checkArgument(maxAttempts > 0, "[Storage] At least one attempt is needed!");
+        Preconditions.checkArgument(maxAttempts == 1 || merge != null, "[Storage] Retrying a conflict needs a merge function!");
+
+        SaveResult<V> result = this.compareAndSave(key, value, expectedVersion, type, 1);
+        for (int attempt = 2; result.isConflict() && attempt <= maxAttempts; attempt++) {
+            V merged = merge.apply(result.getCurrent(), value);
+            if (merged == null) break;
+
+            value = merged;
+            result = this.compareAndSave(key, value, result.getVersion(), type, attempt);
+        }
+        return result;
+    }
+
+    private SaveResult<V> compareAndSave(UUID key, V value, long expectedVersion, Type type, int attempt) {
+        BsonDocument document = new BsonDocument();
+        document.putAll(this.encode(value, type));
+        document.put(this.versionField, new BsonInt64(expectedVersion + 1));
+
+        Bson id = this.keyFormat.writeFilter(key);
+        this.invalidate(key);
+        try {
+            UpdateResult result = expectedVersion == 0
+                    // Documents saved without a version count as version 0
+                    ? this.bsonCollection.replaceOne(Filters.and(id, Filters.exists(this.versionField, false)), document, REPLACE_OPTIONS)
+                    : this.bsonCollection.replaceOne(Filters.and(id, Filters.eq(this.versionField, expectedVersion)), document);
+
+            if (result.getMatchedCount() > 0 || result.getUpsertedId() != null) {
+                this.invalidate(key);
+                if (this.cache != null) {
+                    this.cache.put(key, value);
+                }
+                this.publish(key);
+                return new SaveResult<>(SaveResult.Status.SAVED, expectedVersion + 1, null, attempt);
+            }
+        } catch (MongoWriteException e) {
+            // The upsert lost against another node creating the document
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) throw e;
+        }
+
+        Versioned<V> current = this.loadVersioned(key, type);
+        if (current == null) {
+            return new SaveResult<>(SaveResult.Status.CONFLICT, 0, null, attempt);
+        }
+        return new SaveResult<>(SaveResult.Status.CONFLICT, current.getVersion(), current.getValue(), attempt);
+    }
+
+    private void checkVersioning() {
+        Preconditions.checkState(this.versionField != null, "[Storage] Versioning is not enabled!");
+        Preconditions.checkState(this.keyFormat != KeyFormat.MIGRATING, "[Storage] Versioned saves need a single key format!");
+    }
+
+    /**
+     * Field updates count as a new version of the document
+     */
+    private Bson versioned(Bson changes) {
+        return this.versionField == null ? changes : Updates.combine(changes, Updates.inc(this.versionField, 1L));
+    }
+
+    /**
+     * Start an atomic update of single fields of a key, see {@link FieldUpdate}.
+     * The cached value and snapshot of the key are dropped once it is applied.
+     * <p>
+     * With write-behind enabled, a save of the key that is still queued
+     * is sent first, so it can't overwrite the change later.
+     *
+     * @param key {@link UUID key}
+     * @return    {@link FieldUpdate update}
+     */
+    public FieldUpdate update(UUID key) {
+        return new FieldUpdate(this, key);
+    }
+
+    CompletableFuture<Void> applyUpdate(FieldUpdate update) {
+        Bson changes = this.versioned(update.toUpdate());
+        this.invalidate(update.getKey());
+        return this.submitUpdate(update.getKey(), changes);
+    }
+
+    void applyUpdateSync(FieldUpdate update) {
+        Bson changes = this.versioned(update.toUpdate());
+        this.invalidate(update.getKey());
+        // Behind the async writes of the key still waiting, like saveDataSync
+        this.submitUpdate(update.getKey(), changes).join();
+    }
+
+    private CompletableFuture<Void> submitUpdate(UUID key, Bson changes) {
+        CompletableFuture<Void> queued = this.writeBehind == null ? CompletableFuture.completedFuture(null) : this.writeBehind.flush(key);
+        // Never coalesced, every update counts
+        return this.writer.submit(key, () -> {
+            // Whether or not the queued save went through, the update is applied after it
+            queued.exceptionally(throwable -> null).join();
+            this.writeUpdate(key, changes);
+        }, false);
+    }
+
+    /**
+     * Apply many field updates with a single ordered bulk write,
+     * updates of the same key are applied in the given order.
+     * <p>
+     * Unlike {@link FieldUpdate#apply()} these are not ordered
+     * against other asynchronous writes of the same keys.
+     *
+     * @param updates {@link Collection updates}
+     * @return        {@link CompletableFuture completed once all updates were acknowledged}
+     */
+    public CompletableFuture<Void> updateAll(Collection<FieldUpdate> updates) {
+        List<UUID> keys = new ArrayList<>(updates.size());
+        List<Bson> changes = new ArrayList<>(updates.size());
+        for (FieldUpdate update : updates) {
+            if (update.isEmpty()) continue;
+
+            keys.add(update.getKey());
+            changes.add(this.versioned(update.toUpdate()));
+            this.invalidate(update.getKey());
+        }
+
+        return CompletableFuture.runAsync(() -> {
+            if (keys.isEmpty()) return;
+
+            if (this.keyFormat == KeyFormat.MIGRATING) {
+                // Each key has to find its document in either format first
+                for (int i = 0; i < keys.size(); i++) {
+                    this.writeUpdate(keys.get(i), changes.get(i));
+                }
+                return;
+            }
+
+            List<WriteModel<BsonDocument>> models = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                models.add(new UpdateOneModel<>(this.keyFormat.writeFilter(keys.get(i)), changes.get(i), UPSERT_OPTIONS));
+            }
+            try {
+                this.bsonCollection.bulkWrite(models, new BulkWriteOptions().ordered(true));
+            } finally {
+                keys.forEach(this::invalidate);
+                keys.forEach(this::publish);
+            }
+        }, this.executor);
+    }
+
+    private void writeUpdate(UUID key, Bson changes) {
+        try {
+            if (this.keyFormat == KeyFormat.MIGRATING) {
+                // Upserting the binary document straight away would leave the string one behind
+                if (this.bsonCollection.updateOne(this.keyFormat.writeFilter(key), changes).getMatchedCount() > 0) return;
+                if (this.bsonCollection.updateOne(KeyFormat.STRING.writeFilter(key), changes).getMatchedCount() > 0) return;
+            }
+            this.bsonCollection.updateOne(this.keyFormat.writeFilter(key), changes, UPSERT_OPTIONS);
+        } finally {
+            // A load that ran while the update was in flight may have cached the old value
+            this.invalidate(key);
+            this.publish(key);
+        }
+    }
+
+    /**
+     * Encode a value into the document that gets stored for it
+     *
+     * @param value {@link V value}
+     * @param type  {@link Type type of the value}
+     * @return      {@link BsonDocument encoded document}
+     */
+    private BsonDocument encode(V value, Type type) {
+        if (this.bsonCodec) {
+            return new RawBsonDocument(value, this.codec(type));
+        }
+        return this.wrap(Document.parse(this.gson.toJson(value, type)));
+    }
+
+    /**
+     * Decode a value from a document that did not come from the collection
+     */
+    private V decode(RawBsonDocument document, Type type) {
+        if (this.bsonCodec) {
+            return document.decode(this.codec(type));
+        }
+        Document decoded = document.decode(this.collection.getCodecRegistry().get(Document.class));
+        return this.gson.fromJson(decoded.toJson(), type);
+    }
+
+    private BsonDocument wrap(Document document) {
+        return BsonDocumentWrapper.asBsonDocument(document, this.collection.getCodecRegistry());
+    }
+
+    private GsonCodec<V> codec(Type type) {
+        return this.codecs.computeIfAbsent(type, t -> new GsonCodec<>(this.gson, t));
     }
 
     /**
      * Delete a certain key in all documents inside the collection
      * Uses long because it could surpass the limit of integer
+     * For big collections prefer {@link #createMigration} with {@link CollectionMigration#unset}
      *
      * @param key {@link String key}
      * @return    {@link Integer amount of deleted documents}
      */
+    @Override
     public CompletableFuture<Long> deleteKeyInAll(String key) {
         return CompletableFuture.supplyAsync(() -> {
             // Unset the key
             Bson combinedUpdate = Updates.unset(key);
 
             // Apply the updates to all documents in the collection
-            return collection.updateMany(new Document(), combinedUpdate).getModifiedCount();  // new Document() is an empty filter, meaning "all documents";
-        });
+            long modified = collection.updateMany(new Document(), combinedUpdate).getModifiedCount();  // new Document() is an empty filter, meaning "all documents";
+
+            this.forgetAll();
+            if (this.invalidationBus != null) {
+                this.invalidationBus.publishAll();
+            }
+            return modified;
+        }, this.executor);
+    }
+
+    /**
+     * Drop everything this storage remembers about any key
+     */
+    private void forgetAll() {
+        this.loads.clear();
+        this.prefetched.invalidateAll();
+        if (this.offHeapCache != null) {
+            this.offHeapCache.invalidateAll();
+        }
+        if (this.cache != null) {
+            this.cache.invalidateAll();
+        }
+        if (this.dirtyTracker != null) {
+            this.dirtyTracker.forgetAll();
+        }
+    }
+
+    /**
+     * Tell other nodes a key was changed, once the change is in Mongo
+     */
+    private void publish(UUID key) {
+        if (this.invalidationBus != null) {
+            this.invalidationBus.publish(key);
+        }
+    }
+
+    /**
+     * Another node changed a key
+     */
+    private void evict(UUID key) {
+        boolean refresh = this.refreshType != null && this.cache != null && this.cache.contains(key);
+        this.invalidate(key);
+        if (refresh) {
+            this.loadDataAsync(key, this.refreshType);
+        }
+    }
+
+    /**
+     * A running or finished load, together with the type it decodes to
+     */
+    private static class Flight<V> {
+
+        private final Type type;
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+
+        private Flight(Type type) {
+            this.type = type;
+        }
     }
 }
@@ -0,0 +1,50 @@
+package xyz.refinedev.api.storage.mongo;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Outcome of a versioned save. On a conflict the document was changed by someone else
+ * since the expected version, {@link #getCurrent()} holds what is stored now.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@Getter
+@RequiredArgsConstructor
+public class SaveResult<V> {
+
+    private final Status status;
+    /**
+     * Version of the document now, the new one if it was saved
+     */
+    private final long version;
+    /**
+     * Value that is stored now, null if it was saved or there is no document
+     */
+    private final V current;
+    /**
+     * How many attempts it took, more than one if conflicts were merged
+     */
+    private final int attempts;
+
+    public boolean isSaved() {
+        return this.status == Status.SAVED;
+    }
+
+    public boolean isConflict() {
+        return this.status == Status.CONFLICT;
+    }
+
+    public enum Status {
+        SAVED,
+        /**
+         * Someone else saved the document since the expected version
+         */
+        CONFLICT
+    }
+}
@@ -0,0 +1,230 @@
+package xyz.refinedev.api.storage.mongo;
+
+import com.google.common.base.Preconditions;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+
+import lombok.Getter;
+
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Query over the documents of a {@link MongoStorage}, run by the server instead of
+ * filtering a full fetch. Filters are combined with {@code $and}, and every sort
+ * ends with {@code _id} so pages are stable and can be continued with {@link #after}.
+ * <p>
+ * Results are decoded like loads but do not go through the cache,
+ * as a projection may leave fields of the values empty.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class StorageQuery<V> {
+
+    private final MongoStorage<V> storage;
+    @Getter private final Type type;
+
+    private final List<Bson> filters = new ArrayList<>();
+    @Getter private Bson projection;
+    private String sortField;
+    private boolean descending;
+    @Getter private int skip;
+    @Getter private int limit;
+
+    StorageQuery(MongoStorage<V> storage, Type type) {
+        this.storage = storage;
+        this.type = type;
+    }
+
+    /**
+     * Add a filter, see {@link Filters} for the available ones
+     *
+     * @param filter {@link Bson filter}
+     * @return       {@link StorageQuery this query}
+     */
+    public StorageQuery<V> filter(Bson filter) {
+        this.filters.add(filter);
+        return this;
+    }
+
+    public StorageQuery<V> eq(String field, Object value) {
+        return this.filter(Filters.eq(field, value));
+    }
+
+    public StorageQuery<V> ne(String field, Object value) {
+        return this.filter(Filters.ne(field, value));
+    }
+
+    public StorageQuery<V> gt(String field, Object value) {
+        return this.filter(Filters.gt(field, value));
+    }
+
+    public StorageQuery<V> gte(String field, Object value) {
+        return this.filter(Filters.gte(field, value));
+    }
+
+    public StorageQuery<V> lt(String field, Object value) {
+        return this.filter(Filters.lt(field, value));
+    }
+
+    public StorageQuery<V> lte(String field, Object value) {
+        return this.filter(Filters.lte(field, value));
+    }
+
+    public StorageQuery<V> in(String field, Collection<?> values) {
+        return this.filter(Filters.in(field, values));
+    }
+
+    public StorageQuery<V> exists(String field) {
+        return this.filter(Filters.exists(field));
+    }
+
+    /**
+     * Only fetch the given fields, the others are left at their defaults in the decoded values
+     *
+     * @param fields {@link String fields to fetch}
+     * @return       {@link StorageQuery this query}
+     */
+    public StorageQuery<V> include(String... fields) {
+        return this.projection(Projections.include(fields));
+    }
+
+    public StorageQuery<V> exclude(String... fields) {
+        return this.projection(Projections.exclude(fields));
+    }
+
+    public StorageQuery<V> projection(Bson projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    /**
+     * Sort by a single field, ties are broken by {@code _id} in the same direction
+     *
+     * @param field      {@link String field to sort by}
+     * @param descending {@link Boolean highest first}
+     * @return           {@link StorageQuery this query}
+     */
+    public StorageQuery<V> sort(String field, boolean descending) {
+        this.sortField = field;
+        this.descending = descending;
+        return this;
+    }
+
+    public StorageQuery<V> ascending(String field) {
+        return this.sort(field, false);
+    }
+
+    public StorageQuery<V> descending(String field) {
+        return this.sort(field, true);
+    }
+
+    public StorageQuery<V> skip(int skip) {
+        Preconditions.checkArgument(skip >= 0, "[Storage] Skip can't be negative!");
+        this.skip = skip;
+        return this;
+    }
+
+    public StorageQuery<V> limit(int limit) {
+        Preconditions.checkArgument(limit >= 0, "[Storage] Limit can't be negative!");
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Continue after the last entry of the previous page. Unlike {@link #skip} the server
+     * does not walk the skipped entries, so deep pages cost as much as the first one.
+     * Requires a sort, pass the sort field value and key of the last entry.
+     *
+     * @param value {@link Object sort field value of the last entry}
+     * @param key   {@link UUID key of the last entry}
+     * @return      {@link StorageQuery this query}
+     */
+    public StorageQuery<V> after(Object value, UUID key) {
+        Preconditions.checkState(this.sortField != null, "[Storage] Keyset pagination requires a sort!");
+
+        Object id = this.storage.getKeyFormat().toId(key);
+        if (this.descending) {
+            return this.filter(Filters.or(
+                    Filters.lt(this.sortField, value),
+                    Filters.and(Filters.eq(this.sortField, value), Filters.lt("_id", id))
+            ));
+        }
+        return this.filter(Filters.or(
+                Filters.gt(this.sortField, value),
+                Filters.and(Filters.eq(this.sortField, value), Filters.gt("_id", id))
+        ));
+    }
+
+    public Bson toFilter() {
+        if (this.filters.isEmpty()) {
+            return new BsonDocument();
+        }
+        return this.filters.size() == 1 ? this.filters.get(0) : Filters.and(this.filters);
+    }
+
+    public Bson toSort() {
+        if (this.sortField == null) {
+            return null;
+        }
+        return this.descending ? Sorts.descending(this.sortField, "_id") : Sorts.ascending(this.sortField, "_id");
+    }
+
+    /**
+     * Stream the matching entries, the stream holds an open cursor so always close it
+     *
+     * @return {@link Stream lazily decoded entries}
+     */
+    public Stream<V> stream() {
+        return this.storage.stream(this, this.limit);
+    }
+
+    public List<V> list() {
+        try (Stream<V> stream = this.stream()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    public CompletableFuture<List<V>> listAsync() {
+        return CompletableFuture.supplyAsync(this::list, this.storage.getExecutor());
+    }
+
+    public V first() {
+        try (Stream<V> stream = this.storage.stream(this, 1)) {
+            return stream.findFirst().orElse(null);
+        }
+    }
+
+    public CompletableFuture<V> firstAsync() {
+        return CompletableFuture.supplyAsync(this::first, this.storage.getExecutor());
+    }
+
+    /**
+     * Amount of matching documents, honouring skip and limit
+     *
+     * @return {@link Long amount of documents}
+     */
+    public long count() {
+        return this.storage.count(this);
+    }
+
+    public CompletableFuture<Long> countAsync() {
+        return CompletableFuture.supplyAsync(this::count, this.storage.getExecutor());
+    }
+}
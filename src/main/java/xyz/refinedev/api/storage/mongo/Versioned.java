@@ -0,0 +1,26 @@
+package xyz.refinedev.api.storage.mongo;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * A value together with the version of the document it was loaded from,
+ * pass the version to {@link MongoStorage#saveVersioned} when saving it again.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@Getter
+@RequiredArgsConstructor
+public class Versioned<V> {
+
+    private final V value;
+    /**
+     * Version of the document, 0 if it has none yet
+     */
+    private final long version;
+}
@@ -0,0 +1,366 @@
+package xyz.refinedev.api.storage.mongo.cache;
+
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Cache of encoded documents outside of the heap, for large amounts of cold data
+ * that would cost too much as objects. Entries are appended to direct buffer slabs,
+ * optionally deflated, and found through an open addressing index of two longs per key,
+ * so the cache adds next to nothing to the heap and nothing for the GC to trace.
+ * <p>
+ * Once every slab is full the oldest one is dropped with all entries in it and reused,
+ * space of overwritten entries is reclaimed that way as well.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class OffHeapCache {
+
+    private static final int STRIPES = 64;
+    private static final long EMPTY = -1;
+    /**
+     * length, raw length and compression flag in front of every entry
+     */
+    private static final int ENTRY_HEADER = 4 + 4 + 1;
+
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final boolean compress;
+
+    /**
+     * Sequence number of the slab being written and of the oldest live slab
+     */
+    private long writeSlab;
+    private long oldestSlab;
+
+    private long[] msbs;
+    private long[] lsbs;
+    /**
+     * Slab sequence number in the upper, offset in the lower 32 bits, {@link #EMPTY} for free slots
+     */
+    private long[] locations;
+    private int size;
+
+    private final long[] generations = new long[STRIPES];
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create an off-heap cache
+     *
+     * @param maximumBytes {@link Long direct memory to use at most}
+     * @param slabSize     {@link Integer size of a single slab, entries larger than this are not cached}
+     * @param compress     {@link Boolean whether entries are deflated}
+     */
+    public OffHeapCache(long maximumBytes, int slabSize, boolean compress) {
+        Preconditions.checkArgument(slabSize > ENTRY_HEADER, "[Storage] Slab size is too small!");
+        Preconditions.checkArgument(maximumBytes / slabSize >= 2, "[Storage] Off-heap cache needs room for at least two slabs!");
+        Preconditions.checkArgument(maximumBytes / slabSize <= Integer.MAX_VALUE, "[Storage] Too many slabs, use bigger ones!");
+
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) (maximumBytes / slabSize)];
+        this.compress = compress;
+        this.resize(1024);
+    }
+
+    /**
+     * Encoded document of a key
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Byte encoded document, null if not cached}
+     */
+    public byte[] get(UUID key) {
+        byte[] stored;
+        int rawLength;
+        boolean compressed;
+
+        synchronized (this) {
+            int slot = this.find(key);
+            if (slot < 0) {
+                this.misses.incrementAndGet();
+                return null;
+            }
+
+            long location = this.locations[slot];
+            ByteBuffer slab = this.slabs[(int) ((location >>> 32) % this.slabs.length)].duplicate();
+            slab.position((int) location);
+
+            stored = new byte[slab.getInt()];
+            rawLength = slab.getInt();
+            compressed = slab.get() == 1;
+            slab.get(stored);
+        }
+
+        this.hits.incrementAndGet();
+        return compressed ? inflate(stored, rawLength) : stored;
+    }
+
+    /**
+     * Take the current write generation of the key, before loading it
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Long generation to pass to {@link #putIfUnchanged}}
+     */
+    public synchronized long stamp(UUID key) {
+        return this.generations[stripe(key)];
+    }
+
+    /**
+     * Cache a loaded document, unless the key was invalidated since the stamp was taken
+     *
+     * @param key      {@link UUID key}
+     * @param document {@link Byte encoded document}
+     * @param stamp    {@link Long generation from {@link #stamp}}
+     */
+    public void putIfUnchanged(UUID key, byte[] document, long stamp) {
+        byte[] stored = this.compress ? deflate(document) : document;
+        boolean compressed = stored != document;
+        if (ENTRY_HEADER + stored.length > this.slabSize) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.generations[stripe(key)] != stamp) {
+                return;
+            }
+
+            ByteBuffer slab = this.slab(ENTRY_HEADER + stored.length);
+            long location = (this.writeSlab << 32) | slab.position();
+            slab.putInt(stored.length);
+            slab.putInt(document.length);
+            slab.put((byte) (compressed ? 1 : 0));
+            slab.put(stored);
+
+            this.insert(key, location);
+        }
+    }
+
+    public synchronized void invalidate(UUID key) {
+        this.generations[stripe(key)]++;
+        int slot = this.find(key);
+        if (slot >= 0) {
+            this.remove(slot);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            this.generations[i]++;
+        }
+        Arrays.fill(this.locations, EMPTY);
+        this.size = 0;
+        this.oldestSlab = this.writeSlab;
+        if (this.slabs[(int) (this.writeSlab % this.slabs.length)] != null) {
+            this.slabs[(int) (this.writeSlab % this.slabs.length)].clear();
+        }
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Direct memory allocated by the slabs so far
+     *
+     * @return {@link Long bytes}
+     */
+    public synchronized long getAllocatedBytes() {
+        long allocated = 0;
+        for (ByteBuffer slab : this.slabs) {
+            if (slab != null) {
+                allocated += slab.capacity();
+            }
+        }
+        return allocated;
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * The slab to write an entry of the given size to, moving on to the next one if it doesn't fit
+     */
+    private ByteBuffer slab(int length) {
+        int index = (int) (this.writeSlab % this.slabs.length);
+        ByteBuffer slab = this.slabs[index];
+        if (slab == null) {
+            slab = this.slabs[index] = ByteBuffer.allocateDirect(this.slabSize);
+        }
+        if (slab.remaining() >= length) {
+            return slab;
+        }
+
+        this.writeSlab++;
+        if (this.writeSlab - this.oldestSlab >= this.slabs.length) {
+            this.evict(this.oldestSlab++);
+        }
+
+        index = (int) (this.writeSlab % this.slabs.length);
+        if (this.slabs[index] == null) {
+            this.slabs[index] = ByteBuffer.allocateDirect(this.slabSize);
+        }
+        this.slabs[index].clear();
+        return this.slabs[index];
+    }
+
+    /**
+     * Drop every entry that lives in the given slab
+     */
+    private void evict(long slab) {
+        int slot = 0;
+        while (slot < this.locations.length) {
+            long location = this.locations[slot];
+            if (location != EMPTY && location >>> 32 == slab) {
+                // Shifts a later entry into this slot, so look at it again
+                this.remove(slot);
+            } else {
+                slot++;
+            }
+        }
+    }
+
+    private int find(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int mask = this.locations.length - 1;
+
+        for (int slot = hash(msb, lsb) & mask; this.locations[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (this.msbs[slot] == msb && this.lsbs[slot] == lsb) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(UUID key, long location) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        int mask = this.locations.length - 1;
+
+        int slot = hash(msb, lsb) & mask;
+        while (this.locations[slot] != EMPTY) {
+            if (this.msbs[slot] == msb && this.lsbs[slot] == lsb) {
+                this.locations[slot] = location;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.msbs[slot] = msb;
+        this.lsbs[slot] = lsb;
+        this.locations[slot] = location;
+        if (++this.size * 2 > this.locations.length) {
+            this.resize(this.locations.length * 2);
+        }
+    }
+
+    /**
+     * Backward shift deletion, keeps every probe sequence intact without tombstones
+     */
+    private void remove(int slot) {
+        int mask = this.locations.length - 1;
+        int free = slot;
+        int next = (slot + 1) & mask;
+
+        while (this.locations[next] != EMPTY) {
+            int home = hash(this.msbs[next], this.lsbs[next]) & mask;
+            // Move it back unless its home lies cyclically in (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                this.msbs[free] = this.msbs[next];
+                this.lsbs[free] = this.lsbs[next];
+                this.locations[free] = this.locations[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        this.locations[free] = EMPTY;
+        this.size--;
+    }
+
+    private void resize(int capacity) {
+        long[] msbs = this.msbs;
+        long[] lsbs = this.lsbs;
+        long[] locations = this.locations;
+
+        this.msbs = new long[capacity];
+        this.lsbs = new long[capacity];
+        this.locations = new long[capacity];
+        Arrays.fill(this.locations, EMPTY);
+        this.size = 0;
+
+        if (locations != null) {
+            for (int i = 0; i < locations.length; i++) {
+                if (locations[i] != EMPTY) {
+                    this.insert(new UUID(msbs[i], lsbs[i]), locations[i]);
+                }
+            }
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int stripe(UUID key) {
+        return (hash(key.getMostSignificantBits(), key.getLeastSignificantBits()) & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[Math.min(8192, data.length + 64)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            // Not worth the inflate on every read
+            return out.size() < data.length ? out.toByteArray() : data;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("[Storage] Off-heap cache entry ends early!");
+                }
+                read += inflated;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("[Storage] Off-heap cache entry is corrupt!", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
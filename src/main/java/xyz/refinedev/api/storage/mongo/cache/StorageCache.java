@@ -0,0 +1,154 @@
+package xyz.refinedev.api.storage.mongo.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Bounded read-through cache for storage values, with LRU eviction,
+ * expire-after-access and hit/miss statistics.
+ * <p>
+ * Every write bumps a generation counter of the key's stripe, a load only
+ * caches its result if no write happened to that stripe while it was in flight.
+ * That way a slow load can never overwrite a newer value that was saved meanwhile.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class StorageCache<V> {
+
+    private static final int STRIPES = 64;
+
+    private final Cache<UUID, V> cache;
+    private final long[] generations = new long[STRIPES];
+    private final Object[] locks = new Object[STRIPES];
+
+    /**
+     * Create a cache bounded by the amount of entries
+     *
+     * @param maximumSize       {@link Long maximum amount of entries}
+     * @param expireAfterAccess {@link Long time after the last access before an entry expires}
+     * @param unit              {@link TimeUnit unit of the expiry}
+     */
+    public StorageCache(long maximumSize, long expireAfterAccess, TimeUnit unit) {
+        this(CacheBuilder.newBuilder().maximumSize(maximumSize), expireAfterAccess, unit);
+    }
+
+    /**
+     * Create a cache bounded by the total weight of its entries
+     *
+     * @param maximumWeight     {@link Long maximum total weight}
+     * @param weigher           {@link Weigher weigher of the entries}
+     * @param expireAfterAccess {@link Long time after the last access before an entry expires}
+     * @param unit              {@link TimeUnit unit of the expiry}
+     */
+    public StorageCache(long maximumWeight, Weigher<UUID, V> weigher, long expireAfterAccess, TimeUnit unit) {
+        this(CacheBuilder.newBuilder().maximumWeight(maximumWeight).weigher(weigher), expireAfterAccess, unit);
+    }
+
+    private StorageCache(CacheBuilder<? super UUID, ? super V> builder, long expireAfterAccess, TimeUnit unit) {
+        if (expireAfterAccess > 0) {
+            builder.expireAfterAccess(expireAfterAccess, unit);
+        }
+        this.cache = builder.recordStats().build();
+
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    public V get(UUID key) {
+        return this.cache.getIfPresent(key);
+    }
+
+    /**
+     * Take the current write generation of the key, before loading it
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Long generation to pass to {@link #putIfUnchanged}}
+     */
+    public long stamp(UUID key) {
+        int stripe = stripe(key);
+        synchronized (this.locks[stripe]) {
+            return this.generations[stripe];
+        }
+    }
+
+    /**
+     * Cache a loaded value, unless the key was written since the stamp was taken
+     *
+     * @param key   {@link UUID key}
+     * @param value {@link V loaded value}
+     * @param stamp {@link Long stamp taken before the load}
+     */
+    public void putIfUnchanged(UUID key, V value, long stamp) {
+        int stripe = stripe(key);
+        synchronized (this.locks[stripe]) {
+            if (this.generations[stripe] == stamp) {
+                this.cache.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Write-through a saved value
+     *
+     * @param key   {@link UUID key}
+     * @param value {@link V value}
+     */
+    public void put(UUID key, V value) {
+        int stripe = stripe(key);
+        synchronized (this.locks[stripe]) {
+            this.generations[stripe]++;
+            this.cache.put(key, value);
+        }
+    }
+
+    /**
+     * Whether the key is cached, without counting as a hit or miss
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Boolean whether it is cached}
+     */
+    public boolean contains(UUID key) {
+        return this.cache.asMap().containsKey(key);
+    }
+
+    public void invalidate(UUID key) {
+        int stripe = stripe(key);
+        synchronized (this.locks[stripe]) {
+            this.generations[stripe]++;
+            this.cache.invalidate(key);
+        }
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            synchronized (this.locks[i]) {
+                this.generations[i]++;
+            }
+        }
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    public CacheStats getStats() {
+        return this.cache.stats();
+    }
+
+    private static int stripe(UUID key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,448 @@
+package xyz.refinedev.api.storage.mongo.codec;
+
+import com.google.gson.internal.JsonReaderInternalAccess;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.UUID;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * A {@link JsonReader} that reads straight from a {@link BsonReader},
+ * so Gson can decode a document without it ever becoming JSON text.
+ * BSON types without a JSON counterpart are exposed as strings or numbers.
+ * <p>
+ * Gson's map adapter turns names into values through an internal hook that
+ * only inspects the private state of {@link JsonReader}, that state is mirrored
+ * for names. {@link #isSupported()} tells whether that works with the Gson on the classpath.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+final class BsonJsonReader extends JsonReader {
+
+    private static final Reader UNREADABLE_READER = new Reader() {
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    /**
+     * Values of JsonReader's private peeked state, these have not changed since Gson 2.2
+     */
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_DOUBLE_QUOTED = 9;
+    private static final int PEEKED_DOUBLE_QUOTED_NAME = 13;
+
+    private static final Field PEEKED_FIELD;
+    private static final boolean SUPPORTED;
+
+    static {
+        Field field;
+        try {
+            field = JsonReader.class.getDeclaredField("peeked");
+            field.setAccessible(true);
+        } catch (Exception e) {
+            field = null;
+        }
+        PEEKED_FIELD = field;
+        SUPPORTED = field != null && probe();
+    }
+
+    private final BsonReader reader;
+    /**
+     * One entry per open container, true if that container is an array
+     */
+    private final Deque<Boolean> containers = new ArrayDeque<>();
+    private JsonToken peeked;
+    private boolean started;
+    private boolean promotedName;
+
+    BsonJsonReader(BsonReader reader) {
+        super(UNREADABLE_READER);
+        this.reader = reader;
+    }
+
+    /**
+     * Whether this reader can be used with the Gson version on the classpath
+     *
+     * @return {@link Boolean supported}
+     */
+    static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (this.peeked == JsonToken.NAME && this.isPromoted()) {
+            this.peeked = JsonToken.STRING;
+            this.promotedName = true;
+        }
+        if (this.peeked != null) {
+            return this.peeked;
+        }
+
+        if (this.containers.isEmpty()) {
+            this.peeked = this.started ? JsonToken.END_DOCUMENT : JsonToken.BEGIN_OBJECT;
+            return this.peeked;
+        }
+
+        BsonType type = this.reader.readBsonType();
+        boolean array = this.containers.peek();
+        if (type == BsonType.END_OF_DOCUMENT) {
+            this.peeked = array ? JsonToken.END_ARRAY : JsonToken.END_OBJECT;
+        } else if (!array) {
+            this.peeked = JsonToken.NAME;
+            this.setBasePeeked(PEEKED_DOUBLE_QUOTED_NAME);
+        } else {
+            this.peeked = this.tokenOf(type);
+        }
+        return this.peeked;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        this.expect(JsonToken.BEGIN_ARRAY);
+        this.reader.readStartArray();
+        this.containers.push(true);
+        this.peeked = null;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        this.expect(JsonToken.END_ARRAY);
+        this.reader.readEndArray();
+        this.containers.pop();
+        this.peeked = null;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        this.expect(JsonToken.BEGIN_OBJECT);
+        this.reader.readStartDocument();
+        this.containers.push(false);
+        this.started = true;
+        this.peeked = null;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        this.expect(JsonToken.END_OBJECT);
+        this.reader.readEndDocument();
+        this.containers.pop();
+        this.peeked = null;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        JsonToken token = this.peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        this.expect(JsonToken.NAME);
+        return this.readName();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        JsonToken token = this.peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a string but was " + token);
+        }
+        if (this.promotedName) {
+            return this.readName();
+        }
+
+        String value;
+        switch (this.reader.getCurrentBsonType()) {
+            case STRING:
+                value = this.reader.readString();
+                break;
+            case SYMBOL:
+                value = this.reader.readSymbol();
+                break;
+            case OBJECT_ID:
+                value = this.reader.readObjectId().toHexString();
+                break;
+            case BINARY:
+                value = this.readBinary();
+                break;
+            case JAVASCRIPT:
+                value = this.reader.readJavaScript();
+                break;
+            case REGULAR_EXPRESSION:
+                value = this.reader.readRegularExpression().getPattern();
+                break;
+            case INT32:
+                value = Integer.toString(this.reader.readInt32());
+                break;
+            case INT64:
+                value = Long.toString(this.reader.readInt64());
+                break;
+            case DOUBLE:
+                value = Double.toString(this.reader.readDouble());
+                break;
+            case DECIMAL128:
+                value = this.reader.readDecimal128().toString();
+                break;
+            case DATE_TIME:
+                value = Long.toString(this.reader.readDateTime());
+                break;
+            case TIMESTAMP:
+                value = Long.toString(this.reader.readTimestamp().getValue());
+                break;
+            default:
+                throw new IllegalStateException("Unsupported BSON type " + this.reader.getCurrentBsonType());
+        }
+
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        this.expect(JsonToken.BOOLEAN);
+        boolean value = this.reader.readBoolean();
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        this.expect(JsonToken.NULL);
+        if (this.reader.getCurrentBsonType() == BsonType.UNDEFINED) {
+            this.reader.readUndefined();
+        } else {
+            this.reader.readNull();
+        }
+        this.peeked = null;
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        JsonToken token = this.peek();
+        double value;
+        switch (this.reader.getCurrentBsonType()) {
+            case DOUBLE:
+                value = this.reader.readDouble();
+                break;
+            case INT32:
+                value = this.reader.readInt32();
+                break;
+            case INT64:
+                value = this.reader.readInt64();
+                break;
+            case DECIMAL128:
+                value = this.reader.readDecimal128().bigDecimalValue().doubleValue();
+                break;
+            case DATE_TIME:
+                value = this.reader.readDateTime();
+                break;
+            case STRING:
+                value = Double.parseDouble(this.reader.readString());
+                break;
+            default:
+                throw new IllegalStateException("Expected a double but was " + token);
+        }
+
+        if (!this.isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new NumberFormatException("JSON forbids NaN and infinities: " + value);
+        }
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        JsonToken token = this.peek();
+        long value;
+        switch (this.reader.getCurrentBsonType()) {
+            case INT32:
+                value = this.reader.readInt32();
+                break;
+            case INT64:
+                value = this.reader.readInt64();
+                break;
+            case DATE_TIME:
+                value = this.reader.readDateTime();
+                break;
+            case DOUBLE:
+                value = this.toLong(this.reader.readDouble());
+                break;
+            case DECIMAL128:
+                value = this.reader.readDecimal128().bigDecimalValue().longValueExact();
+                break;
+            case STRING:
+                value = new BigDecimal(this.reader.readString()).longValueExact();
+                break;
+            default:
+                throw new IllegalStateException("Expected a long but was " + token);
+        }
+
+        this.peeked = null;
+        return value;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long value = this.nextLong();
+        if ((int) value != value) {
+            throw new NumberFormatException("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        JsonToken token = this.peek();
+        switch (token) {
+            case NAME:
+                this.nextName();
+                return;
+            case END_ARRAY:
+            case END_OBJECT:
+            case END_DOCUMENT:
+                throw new IllegalStateException("Expected a value but was " + token);
+            default:
+                this.reader.skipValue();
+                this.peeked = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        // The BsonReader is owned by the caller
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName();
+    }
+
+    private String readName() {
+        String name = this.reader.readName();
+        this.promotedName = false;
+        this.setBasePeeked(PEEKED_NONE);
+        this.peeked = this.tokenOf(this.reader.getCurrentBsonType());
+        return name;
+    }
+
+    private boolean isPromoted() {
+        try {
+            return PEEKED_FIELD != null && PEEKED_FIELD.getInt(this) == PEEKED_DOUBLE_QUOTED;
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    private void setBasePeeked(int value) {
+        if (PEEKED_FIELD == null) return;
+
+        try {
+            PEEKED_FIELD.setInt(this, value);
+        } catch (IllegalAccessException ignored) {
+            // Only map keys depend on it, checked by the probe
+        }
+    }
+
+    /**
+     * Read {"key": 1} the way Gson's map adapter does
+     *
+     * @return {@link Boolean whether names can be promoted to values}
+     */
+    private static boolean probe() {
+        try {
+            RawBsonDocument document = new RawBsonDocument(new BsonDocument("key", new BsonInt32(1)), new BsonDocumentCodec());
+            BsonJsonReader reader = new BsonJsonReader(new BsonBinaryReader(document.getByteBuffer().asNIO()));
+
+            reader.beginObject();
+            if (!reader.hasNext()) return false;
+
+            JsonReaderInternalAccess.INSTANCE.promoteNameToValue(reader);
+            boolean valid = "key".equals(reader.nextString()) && reader.nextInt() == 1;
+            reader.endObject();
+            return valid;
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = this.peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token);
+        }
+    }
+
+    private long toLong(double value) {
+        long result = (long) value;
+        if (result != value) {
+            throw new NumberFormatException("Expected a long but was " + value);
+        }
+        return result;
+    }
+
+    private String readBinary() {
+        BsonBinary binary = this.reader.readBinaryData();
+        byte subType = binary.getType();
+        byte[] data = binary.getData();
+
+        if (subType == BsonBinarySubType.UUID_STANDARD.getValue() && data.length == 16) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            return new UUID(buffer.getLong(), buffer.getLong()).toString();
+        }
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    private JsonToken tokenOf(BsonType type) {
+        switch (type) {
+            case DOCUMENT:
+                return JsonToken.BEGIN_OBJECT;
+            case ARRAY:
+                return JsonToken.BEGIN_ARRAY;
+            case BOOLEAN:
+                return JsonToken.BOOLEAN;
+            case NULL:
+            case UNDEFINED:
+                return JsonToken.NULL;
+            case INT32:
+            case INT64:
+            case DOUBLE:
+            case DECIMAL128:
+            case DATE_TIME:
+            case TIMESTAMP:
+                return JsonToken.NUMBER;
+            default:
+                return JsonToken.STRING;
+        }
+    }
+}
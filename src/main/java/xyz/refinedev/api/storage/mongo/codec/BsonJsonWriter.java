@@ -0,0 +1,267 @@
+package xyz.refinedev.api.storage.mongo.codec;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.bson.BsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigInteger;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * A {@link JsonWriter} that writes straight into a {@link BsonWriter}.
+ * Numbers are mapped the same way {@link org.bson.Document#parse(String)}
+ * maps the JSON text Gson would have produced, integers become int32 or int64
+ * depending on their range and everything with a fraction or exponent becomes a double.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+final class BsonJsonWriter extends JsonWriter {
+
+    private static final Writer UNWRITABLE_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int counter) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private final BsonWriter writer;
+    private String deferredName;
+
+    BsonJsonWriter(BsonWriter writer) {
+        super(UNWRITABLE_WRITER);
+        this.writer = writer;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        this.writeDeferredName();
+        this.writer.writeStartArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        this.writer.writeEndArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        this.writeDeferredName();
+        this.writer.writeStartDocument();
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        this.writer.writeEndDocument();
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (this.deferredName != null) {
+            throw new IllegalStateException("Expected a value after " + this.deferredName);
+        }
+        this.deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return this.nullValue();
+        }
+        this.writeDeferredName();
+        this.writer.writeString(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (this.deferredName != null && !this.getSerializeNulls()) {
+            // Gson drops the whole member in that case, so do we
+            this.deferredName = null;
+            return this;
+        }
+        this.writeDeferredName();
+        this.writer.writeNull();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        this.writeDeferredName();
+        this.writer.writeBoolean(value);
+        return this;
+    }
+
+    /*
+     * Not present in every Gson version, so these can't be marked as overrides.
+     * Newer versions route booleans, floats and raw JSON through them.
+     */
+
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) {
+            return this.nullValue();
+        }
+        return this.value(value.booleanValue());
+    }
+
+    public JsonWriter value(float value) throws IOException {
+        // Same double Document.parse would read from the float's text
+        return this.value(Double.parseDouble(Float.toString(value)));
+    }
+
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return this.nullValue();
+        }
+
+        // Replayed token by token, so it ends up as the BSON Document.parse would have made of it
+        JsonReader reader = new JsonReader(new StringReader(value));
+        reader.setLenient(true);
+        this.copy(reader);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        if (!this.isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        this.writeDeferredName();
+        this.writer.writeDouble(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        this.writeDeferredName();
+        this.writeInteger(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return this.nullValue();
+        }
+
+        this.writeDeferredName();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            this.writeInteger(value.longValue());
+            return this;
+        }
+        if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            this.writeInteger(value.longValue());
+            return this;
+        }
+
+        // Anything else is classified by the text Gson would have written
+        String text = value.toString();
+        if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1) {
+            try {
+                this.writeInteger(Long.parseLong(text));
+                return this;
+            } catch (NumberFormatException ignored) {
+                // Out of the int64 range or not a plain integer at all
+            }
+        }
+
+        double parsed = Double.parseDouble(text);
+        if (!this.isLenient() && (Double.isNaN(parsed) || Double.isInfinite(parsed))) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        this.writer.writeDouble(parsed);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        this.writer.flush();
+    }
+
+    @Override
+    public void close() {
+        // The BsonWriter is owned by the caller
+    }
+
+    private void copy(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                this.beginArray();
+                while (reader.hasNext()) {
+                    this.copy(reader);
+                }
+                reader.endArray();
+                this.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                this.beginObject();
+                while (reader.hasNext()) {
+                    this.name(reader.nextName());
+                    this.copy(reader);
+                }
+                reader.endObject();
+                this.endObject();
+                break;
+            case STRING:
+                this.value(reader.nextString());
+                break;
+            case NUMBER:
+                this.value(new LazilyParsedNumber(reader.nextString()));
+                break;
+            case BOOLEAN:
+                this.value(reader.nextBoolean());
+                break;
+            case NULL:
+                // Kept even without serializeNulls, the raw JSON is written as it is
+                reader.nextNull();
+                this.writeDeferredName();
+                this.writer.writeNull();
+                break;
+            default:
+                throw new IllegalStateException("Expected a value but was " + reader.peek());
+        }
+    }
+
+    private void writeInteger(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            this.writer.writeInt32((int) value);
+        } else {
+            this.writer.writeInt64(value);
+        }
+    }
+
+    private void writeDeferredName() {
+        if (this.deferredName != null) {
+            this.writer.writeName(this.deferredName);
+            this.deferredName = null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package xyz.refinedev.api.storage.mongo.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+
+import java.lang.reflect.Type;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * A {@link Codec} backed by the type adapters of a {@link Gson} instance.
+ * Values are written to and read from BSON directly, without the JSON text
+ * round trip, while producing the same documents {@code Document.parse(gson.toJson(value))} would.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class GsonCodec<V> implements Codec<V> {
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private final Gson gson;
+    private final Type type;
+    private final Class<V> encoderClass;
+
+    @SuppressWarnings("unchecked")
+    public GsonCodec(Gson gson, Type type) {
+        this.gson = gson;
+        this.type = type;
+        this.encoderClass = (Class<V>) TypeToken.get(type).getRawType();
+    }
+
+    @Override
+    public void encode(BsonWriter writer, V value, EncoderContext encoderContext) {
+        this.gson.toJson(value, this.type, new BsonJsonWriter(writer));
+    }
+
+    @Override
+    public V decode(BsonReader reader, DecoderContext decoderContext) {
+        if (!BsonJsonReader.isSupported()) {
+            // Unknown Gson internals, use the JSON text round trip instead
+            Document document = DOCUMENT_CODEC.decode(reader, decoderContext);
+            return this.gson.fromJson(document.toJson(), this.type);
+        }
+        return this.gson.fromJson(new BsonJsonReader(reader), this.type);
+    }
+
+    @Override
+    public Class<V> getEncoderClass() {
+        return this.encoderClass;
+    }
+}
@@ -0,0 +1,108 @@
+package xyz.refinedev.api.storage.mongo.invalidation;
+
+import lombok.Getter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Publishes the keys a node changed in one collection and evicts the keys other nodes changed.
+ * Every node numbers its messages, a message with a version that was seen already is ignored,
+ * and a gap in the versions means messages were lost, in that case everything is evicted
+ * as there is no telling which keys they were about.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class InvalidationBus {
+
+    private static final Logger LOGGER = LogManager.getLogger(InvalidationBus.class);
+
+    private final InvalidationTransport transport;
+    @Getter private final String channel;
+    @Getter private final UUID node = UUID.randomUUID();
+
+    private final Consumer<UUID> evict;
+    private final Runnable evictAll;
+    private final Consumer<InvalidationMessage> listener = this::receive;
+
+    private long version;
+    /**
+     * Latest version received from every other node
+     */
+    private final Map<UUID, Long> received = new HashMap<>();
+
+    /**
+     * Join the bus of a collection
+     *
+     * @param transport {@link InvalidationTransport transport}
+     * @param channel   {@link String namespace of the collection}
+     * @param evict     {@link Consumer called with keys another node changed}
+     * @param evictAll  {@link Runnable called when any key may have been changed}
+     */
+    public InvalidationBus(InvalidationTransport transport, String channel, Consumer<UUID> evict, Runnable evictAll) {
+        this.transport = transport;
+        this.channel = channel;
+        this.evict = evict;
+        this.evictAll = evictAll;
+        transport.subscribe(this.listener);
+    }
+
+    public void publish(UUID key) {
+        this.send(key);
+    }
+
+    public void publishAll() {
+        this.send(null);
+    }
+
+    /**
+     * Leave the bus, nothing is published or received anymore
+     */
+    public void close() {
+        this.transport.unsubscribe(this.listener);
+    }
+
+    private synchronized void send(UUID key) {
+        // Numbered and published under the same lock, so they leave in order
+        InvalidationMessage message = new InvalidationMessage(this.node, this.channel, ++this.version, key);
+        try {
+            this.transport.publish(message);
+        } catch (RuntimeException e) {
+            // The version is used up, receivers see the gap with the next message
+            LOGGER.error("[Storage] Unable to publish invalidation of {} for {}.", key == null ? "all keys" : key, this.channel, e);
+        }
+    }
+
+    private void receive(InvalidationMessage message) {
+        if (!this.channel.equals(message.getChannel()) || this.node.equals(message.getNode())) return;
+
+        synchronized (this.received) {
+            Long last = this.received.get(message.getNode());
+            if (last != null && message.getVersion() <= last) return;
+            this.received.put(message.getNode(), message.getVersion());
+
+            if (last != null && message.getVersion() > last + 1) {
+                LOGGER.warn("[Storage] Missed {} invalidations of node {} for {}, evicting everything.",
+                        message.getVersion() - last - 1, message.getNode(), this.channel);
+                this.evictAll.run();
+                return;
+            }
+        }
+
+        if (message.isAll()) {
+            this.evictAll.run();
+        } else {
+            this.evict.accept(message.getKey());
+        }
+    }
+}
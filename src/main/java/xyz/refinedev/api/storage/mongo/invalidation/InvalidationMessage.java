@@ -0,0 +1,89 @@
+package xyz.refinedev.api.storage.mongo.invalidation;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Tells other nodes that a key of a collection was changed. The version counts up by one
+ * for every message a node sends, so receivers can tell duplicates and lost messages apart.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@Getter
+@RequiredArgsConstructor
+public class InvalidationMessage {
+
+    private static final byte FORMAT = 1;
+
+    /**
+     * Node that sent the message
+     */
+    private final UUID node;
+    /**
+     * Namespace of the collection that was changed
+     */
+    private final String channel;
+    private final long version;
+    /**
+     * Key that was changed, null if every key may have been
+     */
+    private final UUID key;
+
+    public boolean isAll() {
+        return this.key == null;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + this.channel.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(this.node.getMostSignificantBits());
+            out.writeLong(this.node.getLeastSignificantBits());
+            out.writeUTF(this.channel);
+            out.writeLong(this.version);
+            out.writeBoolean(this.key != null);
+            if (this.key != null) {
+                out.writeLong(this.key.getMostSignificantBits());
+                out.writeLong(this.key.getLeastSignificantBits());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read a message written by {@link #toBytes()}
+     *
+     * @param bytes {@link Byte encoded message}
+     * @return      {@link InvalidationMessage message}
+     */
+    public static InvalidationMessage fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte format = in.readByte();
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("[Storage] Unknown invalidation message format " + format + "!");
+            }
+            UUID node = new UUID(in.readLong(), in.readLong());
+            String channel = in.readUTF();
+            long version = in.readLong();
+            UUID key = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            return new InvalidationMessage(node, channel, version, key);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("[Storage] Invalidation message is truncated!", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package xyz.refinedev.api.storage.mongo.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Carries invalidations between the nodes that share a collection, for example over
+ * Redis pub/sub or a proxy messaging channel. Messages can be sent as bytes through
+ * {@link InvalidationMessage#toBytes()} and {@link InvalidationMessage#fromBytes(byte[])}.
+ * <p>
+ * Messages of one node have to be delivered in the order they were published,
+ * missing or reordered messages are noticed and make the receiving node drop its whole cache.
+ * A message is delivered to every subscriber, including the ones of the node that sent it.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public interface InvalidationTransport {
+
+    /**
+     * Send a message to every subscriber, should not block for long
+     *
+     * @param message {@link InvalidationMessage message}
+     */
+    void publish(InvalidationMessage message);
+
+    void subscribe(Consumer<InvalidationMessage> listener);
+
+    void unsubscribe(Consumer<InvalidationMessage> listener);
+}
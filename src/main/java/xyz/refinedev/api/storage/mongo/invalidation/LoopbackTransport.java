@@ -0,0 +1,70 @@
+package xyz.refinedev.api.storage.mongo.invalidation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Transport within a single JVM, share one instance between storages to have them act
+ * like separate nodes, for example in tests. Messages go through their byte form,
+ * like they would over a network.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class LoopbackTransport implements InvalidationTransport {
+
+    private static final Logger LOGGER = LogManager.getLogger(LoopbackTransport.class);
+
+    private final List<Consumer<InvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final Executor executor;
+
+    /**
+     * Create a transport that delivers messages on the publishing thread
+     */
+    public LoopbackTransport() {
+        this(Runnable::run);
+    }
+
+    /**
+     * Create a transport that delivers messages on the given executor,
+     * it has to run them in order, for example on a single thread
+     *
+     * @param executor {@link Executor executor}
+     */
+    public LoopbackTransport(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void publish(InvalidationMessage message) {
+        byte[] bytes = message.toBytes();
+        this.executor.execute(() -> {
+            for (Consumer<InvalidationMessage> listener : this.listeners) {
+                try {
+                    listener.accept(InvalidationMessage.fromBytes(bytes));
+                } catch (RuntimeException e) {
+                    LOGGER.error("[Storage] Invalidation listener failed.", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationMessage> listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void unsubscribe(Consumer<InvalidationMessage> listener) {
+        this.listeners.remove(listener);
+    }
+}
@@ -0,0 +1,108 @@
+package xyz.refinedev.api.storage.mongo.scan;
+
+import com.google.common.base.Preconditions;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+
+import lombok.experimental.UtilityClass;
+
+import org.bson.BsonDocument;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Splits a collection into {@code _id} ranges of roughly the same size,
+ * using boundaries from a {@code $sample} of the ids.
+ * <p>
+ * Every range is bound to a single BSON type of {@code _id}, so string and binary keys
+ * (see {@link xyz.refinedev.api.storage.mongo.KeyFormat}) are split separately, and one
+ * last range picks up the documents with an id type the sample did not see.
+ * Together the ranges match every document exactly once.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@UtilityClass
+public class IdPartitioner {
+
+    /**
+     * Ids sampled per requested partition, more samples give more even ranges
+     */
+    private static final int SAMPLES_PER_PARTITION = 16;
+
+    /**
+     * Split the collection into about {@code partitions} ranges
+     *
+     * @param collection {@link MongoCollection collection to split}
+     * @param partitions {@link Integer wanted amount of ranges}
+     * @return           {@link List filters, one per range}
+     */
+    public List<Bson> partition(MongoCollection<?> collection, int partitions) {
+        Preconditions.checkArgument(partitions > 0, "[Storage] Partitions must be positive!");
+        if (partitions == 1) {
+            return Arrays.asList(new BsonDocument());
+        }
+
+        List<BsonDocument> samples = collection.withDocumentClass(BsonDocument.class).aggregate(Arrays.asList(
+                Aggregates.sample(partitions * SAMPLES_PER_PARTITION),
+                Aggregates.project(Projections.include("_id")),
+                Aggregates.sort(Sorts.ascending("_id"))
+        )).allowDiskUse(true).into(new ArrayList<>());
+
+        if (samples.isEmpty()) {
+            return Arrays.asList(new BsonDocument());
+        }
+
+        // Sorted by the server, so every type is one consecutive run
+        Map<BsonType, List<BsonValue>> boundaries = new LinkedHashMap<>();
+        for (BsonDocument sample : samples) {
+            boundaries.putIfAbsent(sample.get("_id").getBsonType(), new ArrayList<>());
+        }
+
+        int step = Math.max(1, samples.size() / partitions);
+        for (int i = step; i < samples.size(); i += step) {
+            BsonValue id = samples.get(i).get("_id");
+            List<BsonValue> typed = boundaries.get(id.getBsonType());
+            if (typed.isEmpty() || !typed.get(typed.size() - 1).equals(id)) {
+                typed.add(id);
+            }
+        }
+
+        List<Bson> ranges = new ArrayList<>();
+        List<Bson> sampledTypes = new ArrayList<>();
+        for (Map.Entry<BsonType, List<BsonValue>> entry : boundaries.entrySet()) {
+            Bson type = Filters.type("_id", entry.getKey());
+            List<BsonValue> typed = entry.getValue();
+            sampledTypes.add(type);
+
+            if (typed.isEmpty()) {
+                ranges.add(type);
+                continue;
+            }
+
+            ranges.add(Filters.and(type, Filters.lt("_id", typed.get(0))));
+            for (int i = 1; i < typed.size(); i++) {
+                ranges.add(Filters.and(type, Filters.gte("_id", typed.get(i - 1)), Filters.lt("_id", typed.get(i))));
+            }
+            ranges.add(Filters.and(type, Filters.gte("_id", typed.get(typed.size() - 1))));
+        }
+
+        ranges.add(Filters.nor(sampledTypes));
+        return ranges;
+    }
+}
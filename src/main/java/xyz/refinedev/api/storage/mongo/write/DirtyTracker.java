@@ -0,0 +1,157 @@
+package xyz.refinedev.api.storage.mongo.write;
+
+import com.google.common.base.Preconditions;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Remembers the last loaded or saved document of every key and turns a new
+ * version of it into a {@code $set}/{@code $unset} update of only the changed paths.
+ * Snapshots are kept as {@link RawBsonDocument}s, so they cost their encoded size and nothing more.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class DirtyTracker {
+
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+    private static final BsonString UNSET = new BsonString("");
+
+    private final Map<UUID, RawBsonDocument> snapshots = new ConcurrentHashMap<>();
+    private final double replaceRatio;
+
+    /**
+     * @param replaceRatio {@link Double changed paths per top-level field above which the whole document is replaced}
+     */
+    public DirtyTracker(double replaceRatio) {
+        Preconditions.checkArgument(replaceRatio > 0, "[Storage] Replace ratio must be positive!");
+        this.replaceRatio = replaceRatio;
+    }
+
+    /**
+     * Remember the document as it is stored right now
+     *
+     * @param key      {@link UUID key}
+     * @param document {@link BsonDocument stored document}
+     */
+    public void remember(UUID key, BsonDocument document) {
+        this.snapshots.put(key, toRaw(document));
+    }
+
+    public void forget(UUID key) {
+        this.snapshots.remove(key);
+    }
+
+    public void forgetAll() {
+        this.snapshots.clear();
+    }
+
+    /**
+     * Compute the update that turns the remembered document into the given one,
+     * and remember the given one for the next save.
+     *
+     * @param key      {@link UUID key}
+     * @param document {@link BsonDocument new document}
+     * @return         {@link BsonDocument the update, empty if nothing changed, null if the document should be replaced}
+     */
+    public BsonDocument update(UUID key, BsonDocument document) {
+        RawBsonDocument current = toRaw(document);
+        RawBsonDocument previous = this.snapshots.put(key, current);
+        if (previous == null) {
+            return null;
+        }
+        return diff(previous, current, this.replaceRatio);
+    }
+
+    /**
+     * Compute the update that turns one document into the other
+     *
+     * @param previous     {@link BsonDocument stored document}
+     * @param current      {@link BsonDocument new document}
+     * @param replaceRatio {@link Double changed paths per top-level field above which the whole document is replaced}
+     * @return             {@link BsonDocument the update, empty if nothing changed, null if the document should be replaced}
+     */
+    public static BsonDocument diff(BsonDocument previous, BsonDocument current, double replaceRatio) {
+        BsonDocument set = new BsonDocument();
+        BsonDocument unset = new BsonDocument();
+        if (!diff("", previous, current, set, unset)) {
+            return null;
+        }
+
+        int changes = set.size() + unset.size();
+        if (changes > replaceRatio * Math.max(1, current.size())) {
+            return null;
+        }
+
+        BsonDocument update = new BsonDocument();
+        if (!set.isEmpty()) {
+            update.put("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.put("$unset", unset);
+        }
+        return update;
+    }
+
+    /**
+     * Collect changed paths, nested documents are compared field by field,
+     * everything else including arrays is set as a whole when it differs.
+     *
+     * @return {@link Boolean false if a changed name can't be expressed as a path}
+     */
+    private static boolean diff(String prefix, BsonDocument previous, BsonDocument current, BsonDocument set, BsonDocument unset) {
+        for (Map.Entry<String, BsonValue> entry : current.entrySet()) {
+            String name = entry.getKey();
+            if (prefix.isEmpty() && name.equals("_id")) continue;
+
+            BsonValue before = previous.get(name);
+            BsonValue after = entry.getValue();
+            if (after.equals(before)) continue;
+            if (!isPathSafe(name)) return false;
+
+            String path = prefix + name;
+            if (before != null && before.isDocument() && after.isDocument() && !after.asDocument().isEmpty()) {
+                BsonDocument childSet = new BsonDocument();
+                BsonDocument childUnset = new BsonDocument();
+                if (diff(path + ".", before.asDocument(), after.asDocument(), childSet, childUnset)) {
+                    set.putAll(childSet);
+                    unset.putAll(childUnset);
+                    continue;
+                }
+            }
+            set.put(path, after);
+        }
+
+        for (String name : previous.keySet()) {
+            if (prefix.isEmpty() && name.equals("_id")) continue;
+            if (current.containsKey(name)) continue;
+            if (!isPathSafe(name)) return false;
+
+            unset.put(prefix + name, UNSET);
+        }
+        return true;
+    }
+
+    private static boolean isPathSafe(String name) {
+        return !name.isEmpty() && name.indexOf('.') == -1 && name.charAt(0) != '$';
+    }
+
+    private static RawBsonDocument toRaw(BsonDocument document) {
+        if (document instanceof RawBsonDocument) {
+            return (RawBsonDocument) document;
+        }
+        return new RawBsonDocument(document, DOCUMENT_CODEC);
+    }
+}
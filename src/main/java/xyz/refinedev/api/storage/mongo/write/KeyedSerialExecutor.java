@@ -0,0 +1,123 @@
+package xyz.refinedev.api.storage.mongo.write;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Runs tasks on an executor, one key at a time and in submission order per key.
+ * Tasks of different keys run in parallel.
+ * <p>
+ * A coalescing task that is still waiting is replaced by the next coalescing task
+ * of the same key, so while a write is in flight only the newest pending one is kept.
+ * Its callers are completed together with the task that replaced it.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class KeyedSerialExecutor {
+
+    private final Executor executor;
+    private final Map<UUID, Slot> slots = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Run a task after every task that was submitted for the key before it
+     *
+     * @param key      {@link UUID key}
+     * @param task     {@link Runnable task}
+     * @param coalesce {@link Boolean whether a newer coalescing task may replace this one while it waits}
+     * @return         {@link CompletableFuture completed once the task, or the one that replaced it, has run}
+     */
+    public CompletableFuture<Void> submit(UUID key, Runnable task, boolean coalesce) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        while (true) {
+            Slot slot = this.slots.computeIfAbsent(key, ignored -> new Slot());
+            synchronized (slot) {
+                if (slot.retired) {
+                    // Emptied and removed right after we got it, take a fresh one
+                    continue;
+                }
+
+                Task last = slot.queue.peekLast();
+                if (coalesce && last != null && last.coalesce) {
+                    last.runnable = task;
+                    last.futures.add(future);
+                } else {
+                    slot.queue.add(new Task(task, coalesce, future));
+                }
+
+                if (!slot.running) {
+                    slot.running = true;
+                    this.executor.execute(() -> this.drain(key, slot));
+                }
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Amount of keys that have tasks running or waiting
+     *
+     * @return {@link Integer busy keys}
+     */
+    public int getActiveKeys() {
+        return this.slots.size();
+    }
+
+    private void drain(UUID key, Slot slot) {
+        while (true) {
+            Task task;
+            synchronized (slot) {
+                task = slot.queue.poll();
+                if (task == null) {
+                    slot.running = false;
+                    slot.retired = true;
+                    this.slots.remove(key, slot);
+                    return;
+                }
+            }
+
+            try {
+                task.runnable.run();
+                task.futures.forEach(future -> future.complete(null));
+            } catch (Throwable throwable) {
+                task.futures.forEach(future -> future.completeExceptionally(throwable));
+            }
+        }
+    }
+
+    private static class Slot {
+
+        private final Deque<Task> queue = new ArrayDeque<>();
+        private boolean running;
+        private boolean retired;
+    }
+
+    private static class Task {
+
+        private final boolean coalesce;
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+        private Runnable runnable;
+
+        private Task(Runnable runnable, boolean coalesce, CompletableFuture<Void> future) {
+            this.runnable = runnable;
+            this.coalesce = coalesce;
+            this.futures.add(future);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package xyz.refinedev.api.storage.mongo.write;
+
+import com.google.common.base.Preconditions;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Queues writes per key and flushes them as unordered bulk writes,
+ * either once {@code batchSize} keys are pending or every flush interval.
+ * Only the latest queued write of a key is sent, every caller of that key
+ * is completed with the outcome of that single write.
+ * <p>
+ * A write can come with a fallback, which is sent instead when its model
+ * turned out to be an update that matched no document.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class WriteBehindQueue<T> {
+
+    private static final Logger LOGGER = LogManager.getLogger(WriteBehindQueue.class);
+    private static final BulkWriteOptions BULK_OPTIONS = new BulkWriteOptions().ordered(false);
+
+    private final MongoCollection<T> collection;
+    private final int batchSize;
+    /**
+     * Single threaded, so two flushes can never run at the same time
+     * and a newer batch can not overtake an older one for the same key.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private final Map<UUID, PendingWrite<T>> pending = new LinkedHashMap<>();
+    private boolean flushRequested;
+    private boolean shutdown;
+
+    /**
+     * Create a write-behind queue for the given collection
+     *
+     * @param collection    {@link MongoCollection collection to write to}
+     * @param batchSize     {@link Integer amount of pending keys that triggers a flush}
+     * @param flushInterval {@link Long interval between timed flushes}
+     * @param unit          {@link TimeUnit unit of the interval}
+     */
+    public WriteBehindQueue(MongoCollection<T> collection, int batchSize, long flushInterval, TimeUnit unit) {
+        Preconditions.checkArgument(batchSize > 0, "[Storage] Batch size must be positive!");
+        Preconditions.checkArgument(flushInterval > 0, "[Storage] Flush interval must be positive!");
+
+        this.collection = collection;
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(StorageExecutors.newThreadFactory("StorageAPI Write-Behind - " + collection.getNamespace().getCollectionName()));
+        this.scheduler.scheduleWithFixedDelay(this::flushPending, flushInterval, flushInterval, unit);
+    }
+
+    /**
+     * Queue a write for the given key. The model is only built once the
+     * batch is flushed, so a superseded write never gets serialized.
+     *
+     * @param key   {@link UUID key}
+     * @param model {@link Supplier supplier of the write model}
+     * @return      {@link CompletableFuture completed once the write was acknowledged}
+     */
+    public CompletableFuture<Void> enqueue(UUID key, Supplier<WriteModel<T>> model) {
+        return this.enqueue(key, model, null);
+    }
+
+    /**
+     * Queue a write for the given key, the model supplier may return null if there is nothing to write.
+     *
+     * @param key      {@link UUID key}
+     * @param model    {@link Supplier supplier of the write model}
+     * @param fallback {@link Supplier supplier of the model to send if an update model matched nothing}
+     * @return         {@link CompletableFuture completed once the write was acknowledged}
+     */
+    public CompletableFuture<Void> enqueue(UUID key, Supplier<WriteModel<T>> model, Supplier<WriteModel<T>> fallback) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean trigger;
+
+        synchronized (this.lock) {
+            if (this.shutdown) {
+                future.completeExceptionally(new IllegalStateException("[Storage] Write-behind queue has been shut down!"));
+                return future;
+            }
+
+            PendingWrite<T> write = this.pending.get(key);
+            if (write == null) {
+                this.pending.put(key, new PendingWrite<>(model, fallback, future));
+            } else {
+                write.model = model;
+                write.fallback = fallback;
+                write.futures.add(future);
+            }
+
+            trigger = this.pending.size() >= this.batchSize && !this.flushRequested;
+            if (trigger) {
+                this.flushRequested = true;
+            }
+        }
+
+        if (trigger) {
+            this.scheduler.execute(this::flushPending);
+        }
+        return future;
+    }
+
+    /**
+     * Flush everything that is currently pending
+     *
+     * @return {@link CompletableFuture completed once the flush has run}
+     */
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.runAsync(this::flushPending, this.scheduler);
+    }
+
+    /**
+     * Send the queued write of one key now, ahead of the next flush.
+     * Used before writing the key outside the queue, so the queued write can't overwrite it later.
+     *
+     * @param key {@link UUID key}
+     * @return    {@link CompletableFuture completed once the queued write was acknowledged, right away if there is none}
+     */
+    public CompletableFuture<Void> flush(UUID key) {
+        PendingWrite<T> write;
+        synchronized (this.lock) {
+            write = this.pending.remove(key);
+        }
+        if (write == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        write.futures.add(future);
+        try {
+            // On the flush thread, so a later write of the key can't overtake it
+            this.scheduler.execute(() -> this.write(Collections.singletonList(write)));
+        } catch (RejectedExecutionException e) {
+            write.fail(e);
+        }
+        return future;
+    }
+
+    /**
+     * Amount of keys that are waiting for the next flush
+     *
+     * @return {@link Integer pending keys}
+     */
+    public int getPendingCount() {
+        synchronized (this.lock) {
+            return this.pending.size();
+        }
+    }
+
+    /**
+     * Stop accepting writes, flush what is left and stop the flush thread
+     */
+    public void shutdown() {
+        synchronized (this.lock) {
+            this.shutdown = true;
+        }
+
+        this.scheduler.execute(this::flushPending);
+        this.scheduler.shutdown();
+        try {
+            if (!this.scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.error("[Storage] Write-behind queue for {} did not finish flushing in time!", this.collection.getNamespace());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushPending() {
+        while (true) {
+            List<PendingWrite<T>> batch = new ArrayList<>();
+            synchronized (this.lock) {
+                this.flushRequested = false;
+
+                Iterator<PendingWrite<T>> iterator = this.pending.values().iterator();
+                while (iterator.hasNext() && batch.size() < this.batchSize) {
+                    batch.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+            this.write(batch);
+        }
+    }
+
+    private void write(List<PendingWrite<T>> batch) {
+        List<WriteModel<T>> models = new ArrayList<>(batch.size());
+        List<PendingWrite<T>> written = new ArrayList<>(batch.size());
+
+        for (PendingWrite<T> write : batch) {
+            try {
+                WriteModel<T> model = write.model.get();
+                if (model == null) {
+                    write.complete();
+                    continue;
+                }
+
+                models.add(model);
+                written.add(write);
+            } catch (Exception e) {
+                LOGGER.error("[Storage] Unable to serialize queued write!", e);
+                write.fail(e);
+            }
+        }
+
+        if (models.isEmpty()) {
+            return;
+        }
+
+        BulkWriteResult result;
+        try {
+            result = this.collection.bulkWrite(models, BULK_OPTIONS);
+        } catch (MongoBulkWriteException e) {
+            LOGGER.error("[Storage] {} queued writes failed for {}!", e.getWriteErrors().size(), this.collection.getNamespace(), e);
+            if (e.getWriteConcernError() != null) {
+                written.forEach(write -> write.fail(e));
+                return;
+            }
+
+            // Unordered, so everything except the reported indexes went through
+            Set<Integer> failed = failedIndexes(e);
+            List<WriteModel<T>> succeededModels = new ArrayList<>(models.size());
+            List<PendingWrite<T>> succeeded = new ArrayList<>(written.size());
+            for (int i = 0; i < written.size(); i++) {
+                if (failed.contains(i)) {
+                    written.get(i).fail(e);
+                } else {
+                    succeededModels.add(models.get(i));
+                    succeeded.add(written.get(i));
+                }
+            }
+            this.complete(succeededModels, succeeded, e.getWriteResult());
+            return;
+        } catch (Exception e) {
+            LOGGER.error("[Storage] Unable to flush {} queued writes for {}!", models.size(), this.collection.getNamespace(), e);
+            written.forEach(write -> write.fail(e));
+            return;
+        }
+        this.complete(models, written, result);
+    }
+
+    /**
+     * Complete writes that went through, sending the fallbacks first if an update among them missed.
+     * We can't tell which update missed, but fallbacks write the full document, so sending all of them again is harmless.
+     */
+    private void complete(List<WriteModel<T>> models, List<PendingWrite<T>> writes, BulkWriteResult result) {
+        if (!this.hasMissedUpdates(models, result)) {
+            writes.forEach(PendingWrite::complete);
+            return;
+        }
+
+        List<WriteModel<T>> fallbacks = new ArrayList<>();
+        List<PendingWrite<T>> retried = new ArrayList<>();
+        for (int i = 0; i < models.size(); i++) {
+            PendingWrite<T> write = writes.get(i);
+            if (write.fallback == null || !isConditional(models.get(i))) {
+                write.complete();
+                continue;
+            }
+
+            try {
+                fallbacks.add(write.fallback.get());
+                retried.add(write);
+            } catch (Exception e) {
+                LOGGER.error("[Storage] Unable to serialize queued write!", e);
+                write.fail(e);
+            }
+        }
+
+        if (fallbacks.isEmpty()) {
+            return;
+        }
+
+        try {
+            this.collection.bulkWrite(fallbacks, BULK_OPTIONS);
+            retried.forEach(PendingWrite::complete);
+        } catch (MongoBulkWriteException e) {
+            Set<Integer> failed = e.getWriteConcernError() == null ? failedIndexes(e) : null;
+            for (int i = 0; i < retried.size(); i++) {
+                if (failed == null || failed.contains(i)) {
+                    retried.get(i).fail(e);
+                } else {
+                    retried.get(i).complete();
+                }
+            }
+            LOGGER.error("[Storage] {} fallback writes failed for {}!", e.getWriteErrors().size(), this.collection.getNamespace(), e);
+        } catch (Exception e) {
+            LOGGER.error("[Storage] Unable to send {} fallback writes for {}!", fallbacks.size(), this.collection.getNamespace(), e);
+            retried.forEach(write -> write.fail(e));
+        }
+    }
+
+    /**
+     * Replaces and upserts always match or insert a document, so the result only adds up
+     * to the amount of replaces and updates if every non-upsert update found its document.
+     */
+    private boolean hasMissedUpdates(List<WriteModel<T>> models, BulkWriteResult result) {
+        if (!result.wasAcknowledged()) {
+            return false;
+        }
+
+        int expected = 0;
+        boolean conditional = false;
+        for (WriteModel<T> model : models) {
+            if (model instanceof ReplaceOneModel || model instanceof UpdateOneModel) {
+                expected++;
+                conditional |= isConditional(model);
+            }
+        }
+        return conditional && result.getMatchedCount() + result.getUpserts().size() < expected;
+    }
+
+    private static boolean isConditional(WriteModel<?> model) {
+        return model instanceof UpdateOneModel && !((UpdateOneModel<?>) model).getOptions().isUpsert();
+    }
+
+    private static Set<Integer> failedIndexes(MongoBulkWriteException e) {
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError error : e.getWriteErrors()) {
+            failed.add(error.getIndex());
+        }
+        return failed;
+    }
+
+    private static class PendingWrite<T> {
+
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+        private Supplier<WriteModel<T>> model;
+        private Supplier<WriteModel<T>> fallback;
+
+        private PendingWrite(Supplier<WriteModel<T>> model, Supplier<WriteModel<T>> fallback, CompletableFuture<Void> future) {
+            this.model = model;
+            this.fallback = fallback;
+            this.futures.add(future);
+        }
+
+        private void complete() {
+            this.futures.forEach(future -> future.complete(null));
+        }
+
+        private void fail(Throwable throwable) {
+            this.futures.forEach(future -> future.completeExceptionally(throwable));
+        }
+    }
+}
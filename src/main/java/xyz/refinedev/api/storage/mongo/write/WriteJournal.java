@@ -0,0 +1,596 @@
+package xyz.refinedev.api.storage.mongo.write;
+
+import com.google.common.base.Preconditions;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+
+import lombok.Getter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import xyz.refinedev.api.storage.utils.StorageExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Append-only journal on disk that writes are acknowledged by, so saves never wait for Mongo.
+ * Journaled writes are replayed to Mongo in unordered bulk writes in the background and retried
+ * for as long as Mongo is unreachable. Only the latest journaled write of a key is replayed.
+ * <p>
+ * Appends are written by a single thread in the order they were made, many at a time with a
+ * single fsync. Writes that were journaled but not yet replayed survive a crash, they are read
+ * back and replayed when the journal is opened again. A torn record at the end of the file is
+ * dropped. Once everything is replayed, or the file grows too big, it is compacted to the
+ * writes that are still pending. Records of a failed write are cut off again right away, so later
+ * writes never end up behind a torn one. If that isn't possible the journal stops accepting writes.
+ * <p>
+ * File layout, one record per write: {@code length, crc32, op, key msb, key lsb, sequence, document}.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+public class WriteJournal {
+
+    private static final Logger LOGGER = LogManager.getLogger(WriteJournal.class);
+    private static final BulkWriteOptions BULK_OPTIONS = new BulkWriteOptions().ordered(false);
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    /**
+     * op, key and sequence, the part of a record after length and checksum that is not the document
+     */
+    private static final int RECORD_HEADER = 1 + 8 + 8 + 8;
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+    private static final long COMPACT_SIZE = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final MongoCollection<BsonDocument> collection;
+    /**
+     * Turns a journaled write into the model that replays it, the document is null for deletes
+     */
+    private final BiFunction<UUID, RawBsonDocument, WriteModel<BsonDocument>> models;
+    private final boolean fsync;
+    private final int batchSize;
+
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    /**
+     * Held while checking for shutdown and queueing an append, so none is queued after the writer saw the shutdown
+     */
+    private final Object submitLock = new Object();
+    private final Thread writer;
+    private final ScheduledExecutorService replayer;
+
+    private final Object lock = new Object();
+    private final Map<UUID, Entry> pending = new LinkedHashMap<>();
+
+    /**
+     * Only touched by the writer thread once it has been started
+     */
+    private FileChannel channel;
+    private long sequence;
+
+    /**
+     * Called with every key once its journaled write reached Mongo
+     */
+    private volatile Consumer<UUID> replayListener;
+
+    private volatile boolean compactRequested;
+    private volatile boolean shutdown;
+    /**
+     * Set once a torn record couldn't be cut off, anything appended after it would be lost on recovery
+     */
+    private volatile IOException failure;
+    private boolean unreachable;
+
+    /**
+     * Open the journal, replaying whatever a previous run left in it
+     *
+     * @param file           {@link File journal file}
+     * @param collection     {@link MongoCollection collection to replay to}
+     * @param models         {@link BiFunction creates the replay model of a key and its document, null for deletes}
+     * @param fsync          {@link Boolean whether appends are only acknowledged once they are on disk}
+     * @param batchSize      {@link Integer maximum writes per bulk write}
+     * @param replayInterval {@link Long interval between replays}
+     * @param unit           {@link TimeUnit unit of the interval}
+     * @throws IOException   if the journal can't be read or opened
+     */
+    public WriteJournal(File file, MongoCollection<BsonDocument> collection, BiFunction<UUID, RawBsonDocument, WriteModel<BsonDocument>> models,
+                        boolean fsync, int batchSize, long replayInterval, TimeUnit unit) throws IOException {
+        Preconditions.checkArgument(batchSize > 0, "[Storage] Batch size must be positive!");
+        Preconditions.checkArgument(replayInterval > 0, "[Storage] Replay interval must be positive!");
+
+        this.path = file.toPath();
+        this.collection = collection;
+        this.models = models;
+        this.fsync = fsync;
+        this.batchSize = batchSize;
+
+        if (file.getParentFile() != null) {
+            Files.createDirectories(file.getParentFile().toPath());
+        }
+        this.recover();
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        String name = collection.getNamespace().getCollectionName();
+        this.writer = StorageExecutors.newThreadFactory("StorageAPI Journal - " + name).newThread(this::writeLoop);
+        this.writer.start();
+        this.replayer = Executors.newSingleThreadScheduledExecutor(StorageExecutors.newThreadFactory("StorageAPI Journal Replay - " + name));
+        this.replayer.scheduleWithFixedDelay(this::replay, 0, replayInterval, unit);
+    }
+
+    /**
+     * Journal a new document for the key. The document is encoded on the journal thread,
+     * in the order the appends were made.
+     *
+     * @param key      {@link UUID key}
+     * @param document {@link Supplier supplier of the document}
+     * @return         {@link CompletableFuture completed once the write is in the journal}
+     */
+    public CompletableFuture<Void> append(UUID key, Supplier<BsonDocument> document) {
+        return this.submit(new Append(key, document));
+    }
+
+    /**
+     * Journal the deletion of a key
+     *
+     * @param key {@link UUID key}
+     * @return    {@link CompletableFuture completed once the deletion is in the journal}
+     */
+    public CompletableFuture<Void> delete(UUID key) {
+        return this.submit(new Append(key, null));
+    }
+
+    public void onReplayed(Consumer<UUID> listener) {
+        this.replayListener = listener;
+    }
+
+    /**
+     * The latest write of a key that has not been replayed yet
+     *
+     * @param key {@link UUID key}
+     * @return    {@link Entry pending write, null if the key has none}
+     */
+    public Entry get(UUID key) {
+        synchronized (this.lock) {
+            return this.pending.get(key);
+        }
+    }
+
+    /**
+     * Amount of keys with a write that has not been replayed yet
+     *
+     * @return {@link Integer pending keys}
+     */
+    public int getPendingCount() {
+        synchronized (this.lock) {
+            return this.pending.size();
+        }
+    }
+
+    /**
+     * Replay everything that is pending now
+     *
+     * @return {@link CompletableFuture completed once the replay has run}
+     */
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.runAsync(this::replay, this.replayer);
+    }
+
+    /**
+     * Stop accepting writes, journal what is queued and try to replay it one last time.
+     * Whatever can't be replayed stays in the journal for the next start.
+     */
+    public void shutdown() {
+        synchronized (this.submitLock) {
+            this.shutdown = true;
+        }
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Only left over if the writer didn't finish in time, nobody would complete them
+        List<Append> unwritten = new ArrayList<>();
+        this.appends.drainTo(unwritten);
+        if (!unwritten.isEmpty()) {
+            LOGGER.error("[Storage] {} writes for {} could not be journaled before shutdown!", unwritten.size(), this.collection.getNamespace());
+            unwritten.forEach(append -> append.future.completeExceptionally(new IllegalStateException("[Storage] Journal has been shut down!")));
+        }
+
+        this.replayer.shutdown();
+        try {
+            if (this.replayer.awaitTermination(30, TimeUnit.SECONDS)) {
+                this.replay();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int left = this.getPendingCount();
+        try {
+            if (left > 0) {
+                LOGGER.error("[Storage] {} writes for {} are still in the journal, they will be replayed on the next start.", left, this.collection.getNamespace());
+            } else {
+                this.channel.truncate(0);
+            }
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.error("[Storage] Unable to close journal {}!", this.path, e);
+        }
+    }
+
+    private CompletableFuture<Void> submit(Append append) {
+        synchronized (this.submitLock) {
+            if (this.shutdown) {
+                append.future.completeExceptionally(new IllegalStateException("[Storage] Journal has been shut down!"));
+            } else if (this.failure != null) {
+                append.future.completeExceptionally(new IllegalStateException("[Storage] Journal " + this.path + " is damaged!", this.failure));
+            } else {
+                this.appends.add(append);
+            }
+        }
+        return append.future;
+    }
+
+    private void writeLoop() {
+        List<Append> batch = new ArrayList<>();
+        while (!this.shutdown || !this.appends.isEmpty()) {
+            try {
+                Append first = this.appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.appends.drainTo(batch, 1023);
+                    this.write(batch);
+                    batch.clear();
+                }
+                if (this.compactRequested) {
+                    this.compactRequested = false;
+                    this.compact();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable throwable) {
+                LOGGER.error("[Storage] Journal {} failed!", this.path, throwable);
+                batch.forEach(append -> append.future.completeExceptionally(throwable));
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Append> batch) throws IOException {
+        if (this.failure != null) {
+            // Queued before the journal was damaged
+            IllegalStateException exception = new IllegalStateException("[Storage] Journal " + this.path + " is damaged!", this.failure);
+            batch.forEach(append -> append.future.completeExceptionally(exception));
+            return;
+        }
+
+        List<Append> encoded = new ArrayList<>(batch.size());
+        List<Entry> entries = new ArrayList<>(batch.size());
+        List<ByteBuffer> records = new ArrayList<>(batch.size());
+
+        for (Append append : batch) {
+            try {
+                RawBsonDocument document = append.document == null ? null : toRaw(append.document.get());
+                Entry entry = new Entry(++this.sequence, document);
+                records.add(record(append.key, entry));
+                entries.add(entry);
+                encoded.add(append);
+            } catch (Exception e) {
+                LOGGER.error("[Storage] Unable to serialize journaled write!", e);
+                append.future.completeExceptionally(e);
+            }
+        }
+
+        long position = -1;
+        try {
+            position = this.channel.position();
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            while (buffers.length > 0 && buffers[buffers.length - 1].hasRemaining()) {
+                this.channel.write(buffers);
+            }
+            if (this.fsync) {
+                this.channel.force(false);
+            }
+        } catch (IOException e) {
+            LOGGER.error("[Storage] Unable to write {} records to journal {}!", encoded.size(), this.path, e);
+            this.discardFrom(position, e);
+            encoded.forEach(append -> append.future.completeExceptionally(e));
+            return;
+        }
+
+        synchronized (this.lock) {
+            for (int i = 0; i < encoded.size(); i++) {
+                // Re-inserted, so the replay order follows the latest write
+                this.pending.remove(encoded.get(i).key);
+                this.pending.put(encoded.get(i).key, entries.get(i));
+            }
+        }
+        encoded.forEach(append -> append.future.complete(null));
+    }
+
+    /**
+     * Cut off the records of a failed write. Recovery stops at the first torn record,
+     * so anything appended behind one would be lost on the next start.
+     *
+     * @param position {@link Long size of the journal before the write, -1 if unknown}
+     * @param cause    {@link IOException why the write failed}
+     */
+    private void discardFrom(long position, IOException cause) {
+        try {
+            if (position < 0) {
+                throw new IOException("Journal position is unknown", cause);
+            }
+            this.channel.truncate(position);
+            this.channel.position(position);
+        } catch (IOException e) {
+            LOGGER.error("[Storage] Unable to cut off the failed write in journal {}, no longer accepting writes!", this.path, e);
+            this.failure = e;
+        }
+    }
+
+    private void replay() {
+        while (true) {
+            List<UUID> keys = new ArrayList<>(this.batchSize);
+            List<Entry> entries = new ArrayList<>(this.batchSize);
+            synchronized (this.lock) {
+                Iterator<Map.Entry<UUID, Entry>> iterator = this.pending.entrySet().iterator();
+                while (iterator.hasNext() && keys.size() < this.batchSize) {
+                    Map.Entry<UUID, Entry> next = iterator.next();
+                    keys.add(next.getKey());
+                    entries.add(next.getValue());
+                }
+            }
+
+            if (keys.isEmpty()) {
+                this.requestCompaction(true);
+                return;
+            }
+
+            List<WriteModel<BsonDocument>> models = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                models.add(this.models.apply(keys.get(i), entries.get(i).document));
+            }
+
+            try {
+                this.collection.bulkWrite(models, BULK_OPTIONS);
+            } catch (MongoBulkWriteException e) {
+                if (e.getWriteConcernError() != null) {
+                    LOGGER.error("[Storage] Journal replay for {} was not acknowledged, retrying later.", this.collection.getNamespace(), e);
+                    return;
+                }
+                // Rejected by the server, replaying them again would fail the same way
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    LOGGER.error("[Storage] Dropping journaled write of {} for {}: {}", keys.get(error.getIndex()), this.collection.getNamespace(), error.getMessage());
+                }
+            } catch (RuntimeException e) {
+                // Unreachable or timed out, the writes stay pending for the next replay
+                if (!this.unreachable) {
+                    this.unreachable = true;
+                    LOGGER.error("[Storage] Unable to replay journal to {}, writes are kept until it is reachable.", this.collection.getNamespace(), e);
+                }
+                return;
+            }
+
+            if (this.unreachable) {
+                this.unreachable = false;
+                LOGGER.info("[Storage] {} is reachable again, replaying the journal.", this.collection.getNamespace());
+            }
+
+            synchronized (this.lock) {
+                for (int i = 0; i < keys.size(); i++) {
+                    // Unless it was written again in the meantime
+                    this.pending.remove(keys.get(i), entries.get(i));
+                }
+            }
+            Consumer<UUID> listener = this.replayListener;
+            if (listener != null) {
+                keys.forEach(listener);
+            }
+            this.requestCompaction(false);
+        }
+    }
+
+    private void requestCompaction(boolean replayed) {
+        try {
+            long size = Files.size(this.path);
+            if (size > 0 && (replayed || size > COMPACT_SIZE)) {
+                this.compactRequested = true;
+            }
+        } catch (IOException ignored) {
+            // Checked again after the next replay
+        }
+    }
+
+    /**
+     * Rewrite the journal to only the pending writes, runs on the writer thread
+     */
+    private void compact() throws IOException {
+        List<ByteBuffer> records = new ArrayList<>();
+        synchronized (this.lock) {
+            for (Map.Entry<UUID, Entry> entry : this.pending.entrySet()) {
+                records.add(record(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        if (records.isEmpty()) {
+            this.channel.truncate(0);
+            return;
+        }
+
+        Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                out.write(buffers);
+            }
+            out.force(false);
+        }
+
+        this.channel.close();
+        Files.move(temp, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Read the journal a previous run left behind into the pending writes
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(this.path)) {
+            return;
+        }
+
+        long valid = 0;
+        try (InputStream stream = Files.newInputStream(this.path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                int length;
+                long checksum;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    if (length < RECORD_HEADER || length > MAX_RECORD) break;
+
+                    checksum = in.readInt() & 0xFFFFFFFFL;
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if (crc.getValue() != checksum) break;
+
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                byte op = buffer.get();
+                UUID key = new UUID(buffer.getLong(), buffer.getLong());
+                long sequence = buffer.getLong();
+
+                RawBsonDocument document = null;
+                if (op == PUT) {
+                    document = new RawBsonDocument(body, RECORD_HEADER, body.length - RECORD_HEADER);
+                }
+                this.pending.remove(key);
+                this.pending.put(key, new Entry(sequence, document));
+                this.sequence = Math.max(this.sequence, sequence);
+                valid += 8 + length;
+            }
+        }
+
+        if (valid < Files.size(this.path)) {
+            LOGGER.error("[Storage] Journal {} ends with a damaged record, dropping everything after byte {}.", this.path, valid);
+            try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        if (!this.pending.isEmpty()) {
+            LOGGER.info("[Storage] Recovered {} journaled writes for {}.", this.pending.size(), this.collection.getNamespace());
+        }
+    }
+
+    private static ByteBuffer record(UUID key, Entry entry) {
+        ByteBuffer document = entry.document == null ? null : entry.document.getByteBuffer().asNIO();
+        int length = RECORD_HEADER + (document == null ? 0 : document.remaining());
+
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.put(entry.document == null ? DELETE : PUT);
+        body.putLong(key.getMostSignificantBits());
+        body.putLong(key.getLeastSignificantBits());
+        body.putLong(entry.sequence);
+        if (document != null) {
+            body.put(document);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + length);
+        record.putInt(length);
+        record.putInt((int) crc.getValue());
+        record.put(body.array());
+        record.flip();
+        return record;
+    }
+
+    private static RawBsonDocument toRaw(BsonDocument document) {
+        if (document instanceof RawBsonDocument) {
+            return (RawBsonDocument) document;
+        }
+        return new RawBsonDocument(document, DOCUMENT_CODEC);
+    }
+
+    /**
+     * A journaled write, either a document or a deletion
+     */
+    @Getter
+    public static class Entry {
+
+        private final long sequence;
+        private final RawBsonDocument document;
+
+        private Entry(long sequence, RawBsonDocument document) {
+            this.sequence = sequence;
+            this.document = document;
+        }
+
+        public boolean isDeleted() {
+            return this.document == null;
+        }
+    }
+
+    private static class Append {
+
+        private final UUID key;
+        private final Supplier<BsonDocument> document;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Append(UUID key, Supplier<BsonDocument> document) {
+            this.key = key;
+            this.document = document;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package xyz.refinedev.api.storage.utils;
+
+import lombok.experimental.UtilityClass;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This Project is property of Refine Development © 2021 - 2022
+ * Redistribution of this Project is not allowed
+ *
+ * Executors for blocking storage I/O, so it never runs on {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+ * On Java 21+ the default executor starts a virtual thread per task, older versions
+ * get a bounded pool of daemon threads. Virtual threads can be turned off with
+ * {@code -Dstorageapi.virtualThreads=false}.
+ *
+ * Created: 10/17/2026
+ * Project: StorageAPI
+ */
+
+@UtilityClass
+public class StorageExecutors {
+
+    private static final Logger LOGGER = LogManager.getLogger(StorageExecutors.class);
+    private static final Method VIRTUAL_EXECUTOR_METHOD = findVirtualExecutorMethod();
+
+    private static volatile Executor defaultExecutor;
+
+    /**
+     * Shared executor used by storages that were not given one
+     *
+     * @return {@link Executor default executor}
+     */
+    public Executor getDefault() {
+        Executor executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (StorageExecutors.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    executor = createDefault();
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Create a bounded pool of daemon threads for blocking I/O,
+     * idle threads are stopped after a minute.
+     *
+     * @param name    {@link String name prefix of the threads}
+     * @param threads {@link Integer maximum amount of threads}
+     * @return        {@link ExecutorService pool}
+     */
+    public ExecutorService newIOPool(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), newThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Whether the running JVM can start virtual threads (Java 21+)
+     *
+     * @return {@link Boolean supported}
+     */
+    public boolean isVirtualThreadsSupported() {
+        return VIRTUAL_EXECUTOR_METHOD != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for every task
+     *
+     * @return {@link ExecutorService executor}
+     * @throws UnsupportedOperationException if the JVM has no virtual threads
+     */
+    public ExecutorService newVirtualThreadExecutor() {
+        if (VIRTUAL_EXECUTOR_METHOD == null) {
+            throw new UnsupportedOperationException("[Storage] Virtual threads require Java 21 or newer!");
+        }
+
+        try {
+            return (ExecutorService) VIRTUAL_EXECUTOR_METHOD.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("[Storage] Unable to create a virtual thread executor!", e);
+        }
+    }
+
+    /**
+     * Thread factory for named daemon threads
+     *
+     * @param name {@link String name prefix of the threads}
+     * @return     {@link ThreadFactory factory}
+     */
+    public ThreadFactory newThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + " - " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Executor createDefault() {
+        if (VIRTUAL_EXECUTOR_METHOD != null && Boolean.parseBoolean(System.getProperty("storageapi.virtualThreads", "true"))) {
+            try {
+                return newVirtualThreadExecutor();
+            } catch (UnsupportedOperationException e) {
+                LOGGER.error("[Storage] Falling back to a thread pool, virtual threads are unavailable.", e);
+            }
+        }
+        return newIOPool("StorageAPI I/O", Math.max(8, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    private static Method findVirtualExecutorMethod() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // Java 19 and 20 only have them as a preview feature, creating one verifies they are enabled
+            ((ExecutorService) method.invoke(null)).shutdown();
+            return method;
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+}